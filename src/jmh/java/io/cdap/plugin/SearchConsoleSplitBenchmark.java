@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.gson.JsonObject;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks of planning splits of a listed set of sites and of serializing the planned splits and their
+ * queries, by number of sites and of splits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchConsoleSplitBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int siteCount;
+
+  @Param({"10", "100"})
+  public int numSplits;
+
+  private JobContext jobContext;
+  private List<InputSplit> splits;
+  private List<byte[]> queries;
+
+  @Setup
+  public void setup() throws IOException {
+    List<String> sites = new ArrayList<>();
+    for (int i = 0; i < siteCount; i++) {
+      sites.add(SearchConsoleConstants.SITE_TYPE_DOMAIN + SearchConsoleConstants.SITE_KV_DELIMITER + "site" + i
+                  + ".example.com");
+    }
+    JsonObject properties = new JsonObject();
+    properties.addProperty(SearchConsoleSourceConfig.PROPERTY_REFERENCE_NAME, "benchmark");
+    properties.addProperty(SearchConsoleSourceConfig.SITES_FILTER_OPTION,
+                           SearchConsoleConstants.SITES_FILTER_OPTION_LIST);
+    properties.addProperty(SearchConsoleSourceConfig.SITES_FILTERED_LIST,
+                           String.join(SearchConsoleConstants.SITE_DELIMITER, sites));
+    properties.addProperty(SearchConsoleSourceConfig.START_DATE, "2020-01-01");
+    properties.addProperty(SearchConsoleSourceConfig.END_DATE, "2020-03-31");
+    properties.addProperty(SearchConsoleSourceConfig.DIMENSIONS, "date,country,device");
+    properties.addProperty(SearchConsoleSourceConfig.NUM_SPLITS, numSplits);
+    JsonObject config = new JsonObject();
+    config.add(SearchConsoleConstants.CONFIGURATION_PARSE_PROPERTY_NAME, properties);
+    Configuration configuration = new Configuration(false);
+    configuration.set(SearchConsoleConstants.CONFIGURATION_PROPERTY_NAME, config.toString());
+    jobContext = new JobContextImpl(configuration, new JobID());
+
+    splits = new SearchConsoleInputFormat().getSplits(jobContext);
+    queries = new ArrayList<>();
+    for (InputSplit split : splits) {
+      for (SearchConsoleQuery query : ((SearchConsoleSplit) split).getQueries()) {
+        queries.add(query.toByteArray());
+      }
+    }
+  }
+
+  @Benchmark
+  public List<InputSplit> getSplits() throws IOException {
+    return new SearchConsoleInputFormat().getSplits(jobContext);
+  }
+
+  @Benchmark
+  public void serializeSplits(Blackhole blackhole) throws IOException {
+    DataOutputBuffer output = new DataOutputBuffer();
+    DataInputBuffer input = new DataInputBuffer();
+    for (InputSplit split : splits) {
+      output.reset();
+      ((SearchConsoleSplit) split).write(output);
+      input.reset(output.getData(), output.getLength());
+      SearchConsoleSplit copy = new SearchConsoleSplit();
+      copy.readFields(input);
+      blackhole.consume(copy);
+    }
+  }
+
+  @Benchmark
+  public void parseQueries(Blackhole blackhole) {
+    for (byte[] query : queries) {
+      blackhole.consume(SearchConsoleQuery.parseFrom(query));
+    }
+  }
+}
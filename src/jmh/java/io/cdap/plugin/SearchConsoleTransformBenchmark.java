@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.services.webmasters.model.ApiDataRow;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks of building pages from synthetic {@link ApiDataRow} and transforming their rows into records,
+ * by number of dimensions, shape of the output schema and number of rows of the page. A string schema outputs
+ * every field as string, a typed schema outputs the date dimension as date and metrics as doubles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchConsoleTransformBenchmark {
+
+  private static final String SITE = SearchConsoleConstants.SEARCH_CONSOLE_DOMAIN_PREFIX + "example.com";
+  private static final List<String> DIMENSIONS = Arrays.asList("date", "country", "device", "query", "page");
+  // distinct values of every dimension, queries and pages repeat less than countries and devices
+  private static final int[] CARDINALITIES = {30, 200, 3, 5000, 2000};
+
+  @Param({"1", "3", "5"})
+  public int dimensionCount;
+
+  @Param({"string", "typed"})
+  public String schemaShape;
+
+  @Param({"1000", "25000"})
+  public int rowCount;
+
+  private List<ApiDataRow> apiRows;
+  private List<String> dimensions;
+  private SearchConsolePage page;
+  private SearchConsoleTransformPlan plan;
+  private Schema dateSchema;
+
+  @Setup
+  public void setup() {
+    dimensions = DIMENSIONS.subList(0, dimensionCount);
+    apiRows = generateRows(dimensionCount, rowCount);
+    page = buildPage(apiRows, dimensionCount);
+    plan = SearchConsoleTransformPlan.of(schema(dimensions, "typed".equals(schemaShape)), dimensions);
+    dateSchema = Schema.of(Schema.LogicalType.DATE);
+  }
+
+  @Benchmark
+  public SearchConsolePage buildPage() {
+    return buildPage(apiRows, dimensionCount);
+  }
+
+  @Benchmark
+  public void transform(Blackhole blackhole) throws IOException {
+    SearchConsoleRowIterator rows = new SearchConsoleRowIterator(Collections.singletonList(page).iterator());
+    while (rows.hasNext()) {
+      blackhole.consume(plan.transform(rows.next()));
+    }
+  }
+
+  @Benchmark
+  public void convertField(Blackhole blackhole) throws IOException {
+    for (ApiDataRow row : apiRows) {
+      blackhole.consume(SearchConsoleUtils.convertField(row.getKeys().get(0), dateSchema));
+    }
+  }
+
+  private static SearchConsolePage buildPage(List<ApiDataRow> rows, int dimensionCount) {
+    SearchConsolePage.Builder builder =
+      SearchConsolePage.builder(SITE, SearchConsoleConstants.SITE_TYPE_DOMAIN, dimensionCount);
+    for (ApiDataRow row : rows) {
+      SearchConsoleRow.append(builder, row);
+    }
+    return builder.build();
+  }
+
+  static List<ApiDataRow> generateRows(int dimensionCount, int rowCount) {
+    Random random = new Random(42);
+    LocalDate start = LocalDate.parse("2020-01-01");
+    List<ApiDataRow> rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      List<String> keys = new ArrayList<>(dimensionCount);
+      for (int dimension = 0; dimension < dimensionCount; dimension++) {
+        int value = random.nextInt(CARDINALITIES[dimension]);
+        keys.add(dimension == 0 ? start.plusDays(value).toString() : DIMENSIONS.get(dimension) + "-" + value);
+      }
+      double impressions = 1 + random.nextInt(1000);
+      double clicks = random.nextInt((int) impressions);
+      rows.add(new ApiDataRow().setKeys(keys).setClicks(clicks).setImpressions(impressions)
+                 .setCtr(clicks / impressions).setPosition(1 + random.nextDouble() * 50));
+    }
+    return rows;
+  }
+
+  private static Schema schema(List<String> dimensions, boolean typed) {
+    List<Schema.Field> fields = new ArrayList<>();
+    for (String dimension : dimensions) {
+      boolean date = typed && SearchConsoleConstants.DATE_DIMENSION.equals(dimension);
+      fields.add(Schema.Field.of(dimension, date ? Schema.of(Schema.LogicalType.DATE) : Schema.of(Schema.Type.STRING)));
+    }
+    Schema metricSchema = typed ? Schema.of(Schema.Type.DOUBLE) : Schema.of(Schema.Type.STRING);
+    for (String metric : Arrays.asList("clicks", "impressions", "ctr", "position")) {
+      fields.add(Schema.Field.of(metric, metricSchema));
+    }
+    fields.add(Schema.Field.of("site", Schema.of(Schema.Type.STRING)));
+    fields.add(Schema.Field.of("type", Schema.of(Schema.Type.STRING)));
+    return Schema.recordOf("etlSchemaBody", fields);
+  }
+}
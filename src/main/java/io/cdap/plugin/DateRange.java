@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Inclusive range of dates, as used by Search Console API start and end date.
+ */
+public final class DateRange {
+
+  private final LocalDate startDate;
+  private final LocalDate endDate;
+
+  public DateRange(LocalDate startDate, LocalDate endDate) {
+    if (endDate.isBefore(startDate)) {
+      throw new IllegalArgumentException(
+        String.format("End date '%s' is before start date '%s'.", endDate, startDate));
+    }
+    this.startDate = startDate;
+    this.endDate = endDate;
+  }
+
+  /**
+   * Parses date range from dates in YYYY-MM-DD format
+   *
+   * @param startDate start date
+   * @param endDate   end date
+   * @return {@link DateRange}
+   */
+  public static DateRange parse(String startDate, String endDate) {
+    return new DateRange(LocalDate.parse(startDate), LocalDate.parse(endDate));
+  }
+
+  public LocalDate getStartDate() {
+    return startDate;
+  }
+
+  public LocalDate getEndDate() {
+    return endDate;
+  }
+
+  /**
+   * @return number of days in the range, both start and end date included
+   */
+  public long getDays() {
+    return ChronoUnit.DAYS.between(startDate, endDate) + 1;
+  }
+
+  /**
+   * Divides the range into consecutive windows of given size. The last window may be shorter.
+   *
+   * @param windowDays number of days in a single window
+   * @return {@link List<DateRange>} ordered windows covering the whole range
+   */
+  public List<DateRange> split(long windowDays) {
+    if (windowDays < 1) {
+      throw new IllegalArgumentException("Window must contain at least one day.");
+    }
+    List<DateRange> windows = new ArrayList<>();
+    LocalDate windowStart = startDate;
+    while (!windowStart.isAfter(endDate)) {
+      LocalDate windowEnd = windowStart.plusDays(windowDays - 1);
+      if (windowEnd.isAfter(endDate)) {
+        windowEnd = endDate;
+      }
+      windows.add(new DateRange(windowStart, windowEnd));
+      windowStart = windowEnd.plusDays(1);
+    }
+    return windows;
+  }
+
+  @Override
+  public String toString() {
+    return "DateRange{" +
+      "startDate=" + startDate +
+      ", endDate=" + endDate +
+      '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    DateRange dateRange = (DateRange) o;
+    return Objects.equals(startDate, dateRange.startDate) &&
+      Objects.equals(endDate, dateRange.endDate);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(startDate, endDate);
+  }
+}
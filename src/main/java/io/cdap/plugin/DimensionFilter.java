@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.services.webmasters.model.ApiDimensionFilter;
+import com.google.api.services.webmasters.model.ApiDimensionFilterGroup;
+import com.google.common.base.Strings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Filter of dimension values applied by the Search Console API, in 'dimension:operator:expression' format.
+ * The expression is everything after the second colon, so it may contain colons itself.
+ */
+public final class DimensionFilter {
+
+  public static final List<String> DIMENSIONS =
+    Arrays.asList("country", "device", "page", "query", "searchAppearance");
+  public static final List<String> OPERATORS =
+    Arrays.asList("equals", "notEquals", "contains", "notContains", "includingRegex", "excludingRegex");
+  private static final String GROUP_TYPE_AND = "and";
+  private static final String PARTS_DELIMITER = ":";
+
+  private final String dimension;
+  private final String operator;
+  private final String expression;
+
+  public DimensionFilter(String dimension, String operator, String expression) {
+    this.dimension = dimension;
+    this.operator = operator;
+    this.expression = expression;
+  }
+
+  /**
+   * Parses filters separated by the filter delimiter.
+   *
+   * @param filters filters in 'dimension:operator:expression' format, may be empty
+   * @return {@link List<DimensionFilter>} empty when there are no filters
+   * @throws IllegalArgumentException when a filter is not valid
+   */
+  public static List<DimensionFilter> parseList(@Nullable String filters) {
+    if (Strings.isNullOrEmpty(filters)) {
+      return Collections.emptyList();
+    }
+    List<DimensionFilter> result = new ArrayList<>();
+    for (String filter : filters.split(SearchConsoleConstants.DIMENSION_FILTER_DELIMITER)) {
+      if (!filter.trim().isEmpty()) {
+        result.add(parse(filter.trim()));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param filter filter in 'dimension:operator:expression' format
+   * @return {@link DimensionFilter}
+   * @throws IllegalArgumentException when the filter is not valid
+   */
+  public static DimensionFilter parse(String filter) {
+    String[] parts = filter.split(PARTS_DELIMITER, 3);
+    if (parts.length < 3 || parts[2].isEmpty()) {
+      throw new IllegalArgumentException(
+        String.format("Filter '%s' is not in 'dimension:operator:expression' format.", filter));
+    }
+    String dimension = parts[0].trim();
+    String operator = parts[1].trim();
+    if (!DIMENSIONS.contains(dimension)) {
+      throw new IllegalArgumentException(String.format(
+        "Dimension '%s' of filter '%s' cannot be filtered, use one of %s.", dimension, filter, DIMENSIONS));
+    }
+    if (!OPERATORS.contains(operator)) {
+      throw new IllegalArgumentException(String.format(
+        "Operator '%s' of filter '%s' is not supported, use one of %s.", operator, filter, OPERATORS));
+    }
+    return new DimensionFilter(dimension, operator, parts[2]);
+  }
+
+  /**
+   * @param filters {@link List<DimensionFilter>}
+   * @return single group in which every filter has to match, null when there are no filters
+   */
+  @Nullable
+  public static List<ApiDimensionFilterGroup> toFilterGroups(List<DimensionFilter> filters) {
+    if (filters.isEmpty()) {
+      return null;
+    }
+    List<ApiDimensionFilter> apiFilters = filters.stream()
+      .map(filter -> new ApiDimensionFilter()
+        .setDimension(filter.getDimension())
+        .setOperator(filter.getOperator())
+        .setExpression(filter.getExpression()))
+      .collect(Collectors.toList());
+    // requests are deep copied by the client library, which needs lists it can instantiate
+    List<ApiDimensionFilterGroup> groups = new ArrayList<>();
+    groups.add(new ApiDimensionFilterGroup().setGroupType(GROUP_TYPE_AND).setFilters(apiFilters));
+    return groups;
+  }
+
+  /**
+   * @param groups  filter groups of a request, may be null
+   * @param filters {@link List<DimensionFilter>} added as a group of their own, as all groups have to match
+   * @return filter groups with the filters added, the given groups when there are no filters
+   */
+  @Nullable
+  public static List<ApiDimensionFilterGroup> addFilterGroup(@Nullable List<ApiDimensionFilterGroup> groups,
+                                                             List<DimensionFilter> filters) {
+    if (filters.isEmpty()) {
+      return groups;
+    }
+    List<ApiDimensionFilterGroup> result = new ArrayList<>();
+    if (groups != null) {
+      result.addAll(groups);
+    }
+    result.addAll(toFilterGroups(filters));
+    return result;
+  }
+
+  public String getDimension() {
+    return dimension;
+  }
+
+  public String getOperator() {
+    return operator;
+  }
+
+  public String getExpression() {
+    return expression;
+  }
+
+  @Override
+  public String toString() {
+    return dimension + PARTS_DELIMITER + operator + PARTS_DELIMITER + expression;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    DimensionFilter that = (DimensionFilter) o;
+    return Objects.equals(dimension, that.dimension) &&
+      Objects.equals(operator, that.operator) &&
+      Objects.equals(expression, that.expression);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(dimension, operator, expression);
+  }
+}
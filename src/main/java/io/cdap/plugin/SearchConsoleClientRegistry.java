@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.services.webmasters.Webmasters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Process wide registry of {@link GoogleCredential} and {@link Webmasters} clients, shared by all readers, split
+ * planning and validation using the same credential. Credentials are created once per credential fingerprint
+ * and transport settings, so key files are parsed and tokens are requested once per process rather than once
+ * per split. Requests are sent through the pooled {@link SearchConsoleHttpTransport} of the settings.
+ * <p>
+ * Tokens about to expire are refreshed when the client is taken from the registry, so requests do not wait for
+ * the refresh. Clients not taken for a while are removed from the registry, looked for at most once a minute.
+ */
+public class SearchConsoleClientRegistry {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SearchConsoleClientRegistry.class);
+  private static final long REFRESH_AHEAD_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+  private static final long EVICTION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  private static final SearchConsoleClientRegistry INSTANCE =
+    new SearchConsoleClientRegistry(TimeUnit.MINUTES.toMillis(30));
+
+  private final long idleMillis;
+  private final long evictionIntervalMillis;
+  private final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
+  private final Map<String, Client> clients = new ConcurrentHashMap<>();
+
+  SearchConsoleClientRegistry(long idleMillis) {
+    this.idleMillis = idleMillis;
+    this.evictionIntervalMillis = Math.min(idleMillis, EVICTION_INTERVAL_MILLIS);
+  }
+
+  public static SearchConsoleClientRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @param config {@link SearchConsoleSourceConfig}
+   * @return {@link Webmasters} client shared by all users of the credential of the configuration
+   * @throws IOException when the credential cannot be created
+   */
+  public Webmasters getService(SearchConsoleSourceConfig config) throws IOException {
+    long now = System.currentTimeMillis();
+    long last = lastEviction.get();
+    if (now - last >= evictionIntervalMillis && lastEviction.compareAndSet(last, now)) {
+      clients.values().removeIf(client -> now - client.lastUsed > idleMillis);
+    }
+    String key = SearchConsoleUtils.getCredentialFingerprint(config) + "|" + SearchConsoleHttpTransport.getKey(config)
+      + "|" + config.getRootUrl();
+    Client client = clients.get(key);
+    if (client == null) {
+      // created outside of the map, as reading credentials may take a while
+      SearchConsoleHttpTransport transport = SearchConsoleHttpTransport.of(config);
+      GoogleCredential credential = SearchConsoleUtils.generateCredential(config, transport.getTransport());
+      Client created = new Client(credential,
+                                  SearchConsoleUtils.generateService(credential, transport, config.getRootUrl()));
+      client = clients.putIfAbsent(key, created);
+      client = client == null ? created : client;
+    }
+    client.lastUsed = now;
+    client.refreshIfExpiring();
+    return client.service;
+  }
+
+  /**
+   * @return number of clients in the registry
+   */
+  public int size() {
+    return clients.size();
+  }
+
+  /**
+   * Credential with the client using it.
+   */
+  private static final class Client {
+    // null for unknown authentication methods, the client then sends requests without credentials
+    @Nullable
+    private final GoogleCredential credential;
+    private final Webmasters service;
+    private volatile long lastUsed;
+
+    private Client(@Nullable GoogleCredential credential, Webmasters service) {
+      this.credential = credential;
+      this.service = service;
+    }
+
+    private void refreshIfExpiring() {
+      if (credential == null) {
+        return;
+      }
+      Long expiresIn = credential.getExpiresInSeconds();
+      if (expiresIn == null || expiresIn > REFRESH_AHEAD_SECONDS) {
+        return;
+      }
+      synchronized (this) {
+        // another user may have refreshed the token meanwhile
+        expiresIn = credential.getExpiresInSeconds();
+        if (expiresIn != null && expiresIn <= REFRESH_AHEAD_SECONDS) {
+          try {
+            credential.refreshToken();
+          } catch (IOException e) {
+            // the client library refreshes the token again when a request is rejected
+            LOG.warn("Failed to refresh access token ahead of expiry - {}", e.getMessage());
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Iterator over non empty {@link SearchConsolePage} of a list of sites, which pages through several sites
+ * and date windows at once. Sites are fetched by a bounded pool of threads and their pages are merged
+ * through a bounded queue, so memory use depends on the concurrency and not on the number of sites.
+ */
+public class SearchConsoleConcurrentPageIterator implements Iterator<SearchConsolePage>, Closeable {
+
+  // compared by identity, marks that all sites were fetched
+  private static final SearchConsolePage END_OF_DATA = SearchConsolePage.builder("", "", 0).build();
+
+  private final ExecutorService executor;
+  private final BlockingQueue<SearchConsolePage> pages;
+  private final AtomicInteger remainingSites;
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+  private SearchConsolePage page;
+  private boolean finished;
+
+  public SearchConsoleConcurrentPageIterator(List<SearchConsoleSitePages> sites, int concurrency) {
+    this.pages = new ArrayBlockingQueue<>(concurrency);
+    this.remainingSites = new AtomicInteger(sites.size());
+    this.executor = Executors.newFixedThreadPool(concurrency,
+                                                 SearchConsoleUtils.createFetchThreadFactory("search-console-fetch"));
+    this.finished = sites.isEmpty();
+    for (SearchConsoleSitePages site : sites) {
+      executor.execute(() -> fetch(site));
+    }
+    executor.shutdown();
+  }
+
+  private void fetch(SearchConsoleSitePages site) {
+    try {
+      while (site.hasMore() && failure.get() == null) {
+        SearchConsolePage next = site.next();
+        if (!next.isEmpty()) {
+          pages.put(next);
+        }
+      }
+      if (remainingSites.decrementAndGet() == 0) {
+        pages.put(END_OF_DATA);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      failure.compareAndSet(null, e);
+      // wake up the reader, if the queue is full it is not waiting anyway
+      pages.offer(END_OF_DATA);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (page == null) {
+      if (finished) {
+        return false;
+      }
+      SearchConsolePage next;
+      try {
+        next = pages.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        throw new IllegalStateException("Interrupted while waiting for Search Console data.", e);
+      }
+      if (failure.get() != null) {
+        close();
+        throw new IllegalStateException("Failed to fetch Search Console data.", failure.get());
+      }
+      if (next == END_OF_DATA) {
+        finished = true;
+        return false;
+      }
+      page = next;
+    }
+    return true;
+  }
+
+  @Override
+  public SearchConsolePage next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    SearchConsolePage next = page;
+    page = null;
+    return next;
+  }
+
+  @Override
+  public void close() {
+    finished = true;
+    executor.shutdownNow();
+  }
+}
@@ -30,9 +30,24 @@ public class SearchConsoleConstants {
   public static final String SITE_KV_DELIMITER = "__SITE_KV_DELIMITER__";
   public static final String SITE_DELIMITER = "__SITE_DELIMITER__";
   public static final String DIMENSIONS_DELIMITER = ",";
+  public static final String DIMENSION_FILTER_DELIMITER = "__FILTER_DELIMITER__";
   public static final String AUTH_TYPE_OAUTH = "oAuthClient";
   public static final String AUTH_TYPE_SERVICE_ACCOUNT_FILE = "serviceAccount";
   public static final String AUTH_TYPE_SERVICE_ACCOUNT_JSON = "serviceAccountJson";
   public static final String SITES_FILTER_OPTION_ALL_URLS = "allUrlsOption";
   public static final String SITES_FILTER_OPTION_LIST = "siteUrlListOption";
+  public static final String SPLIT_STRATEGY_SITE_COUNT = "siteCountOption";
+  public static final String SPLIT_STRATEGY_ESTIMATED_COST = "estimatedCostOption";
+  public static final String DATE_DIMENSION = "date";
+  public static final String RESPONSE_PARSER_CLIENT_LIBRARY = "clientLibraryOption";
+  public static final String RESPONSE_PARSER_STREAMING = "streamingOption";
+  public static final String EXTRACTION_MODE_FULL = "fullOption";
+  public static final String EXTRACTION_MODE_INCREMENTAL = "incrementalOption";
+  public static final String QUERY_SUBDIVISION_NONE = "noneOption";
+  public static final String QUERY_SUBDIVISION_SATURATED = "saturatedOption";
+  public static final String INCREMENTAL_END_DATE_PROPERTY_NAME = "search.console.incremental.end.date";
+  public static final String INCREMENTAL_SITES_PROPERTY_NAME = "search.console.incremental.sites";
+  public static final String METRICS_SCOPE_PROPERTY_NAME = "search.console.metrics.scope";
+  // dates of search analytics data are in Pacific Time
+  public static final String SEARCH_CONSOLE_TIME_ZONE = "America/Los_Angeles";
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.services.webmasters.Webmasters;
+import com.google.api.services.webmasters.model.ApiDataRow;
+import com.google.api.services.webmasters.model.ApiDimensionFilterGroup;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryRequest;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Estimates cost of reading sites over date windows by sending a cheap sizing query per site. The sizing
+ * query only requests the date dimension and the daily impressions are used as a rough estimate of the
+ * number of rows returned for that day.
+ * <p>
+ * Rows of a site can also be probed exactly, by requesting a single row at a start row with the dimensions
+ * to be read.
+ * <p>
+ * Dimension filters of the source are applied to all queries, so that only rows which will be read are counted.
+ */
+public class SearchConsoleCostEstimator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SearchConsoleCostEstimator.class);
+
+  private final Webmasters service;
+  private final SearchConsoleQueryExecutor queryExecutor;
+  @Nullable
+  private final List<ApiDimensionFilterGroup> dimensionFilterGroups;
+
+  public SearchConsoleCostEstimator(Webmasters service, SearchConsoleQueryExecutor queryExecutor) {
+    this(service, queryExecutor, null);
+  }
+
+  public SearchConsoleCostEstimator(Webmasters service, SearchConsoleQueryExecutor queryExecutor,
+                                    @Nullable List<ApiDimensionFilterGroup> dimensionFilterGroups) {
+    this.service = service;
+    this.queryExecutor = queryExecutor;
+    this.dimensionFilterGroups = dimensionFilterGroups;
+  }
+
+  /**
+   * Estimates cost of every site and date window pair. Sites which could not be probed are estimated with
+   * the average daily cost of the probed sites.
+   *
+   * @param sites     {@link List<String>} list of sites (with prefix included)
+   * @param dateRange {@link DateRange} whole date range to be read
+   * @param windows   {@link List<DateRange>} date windows within the date range
+   * @return {@link List<SearchConsoleSplitPlanner.WorkUnit>}
+   */
+  public List<SearchConsoleSplitPlanner.WorkUnit> estimate(List<String> sites, DateRange dateRange,
+                                                           List<DateRange> windows) {
+    Map<String, Map<LocalDate, Long>> dailyCosts = new HashMap<>();
+    long totalCost = 0;
+    long totalDays = 0;
+    for (String site : sites) {
+      try {
+        Map<LocalDate, Long> daily = probe(site, dateRange);
+        dailyCosts.put(site, daily);
+        totalCost += daily.values().stream().mapToLong(Long::longValue).sum();
+        totalDays += dateRange.getDays();
+      } catch (IOException e) {
+        LOG.warn("Failed to estimate size of site: {} - {}", site, e.getMessage());
+      }
+    }
+    long defaultDailyCost = totalDays == 0 ? 1 : Math.max(totalCost / totalDays, 1);
+
+    List<SearchConsoleSplitPlanner.WorkUnit> units = new ArrayList<>();
+    for (String site : sites) {
+      Map<LocalDate, Long> daily = dailyCosts.get(site);
+      for (DateRange window : windows) {
+        long cost = daily == null ? defaultDailyCost * window.getDays() : getWindowCost(daily, window);
+        units.add(new SearchConsoleSplitPlanner.WorkUnit(site, window, cost));
+      }
+    }
+    return units;
+  }
+
+  /**
+   * Sends sizing query for a single site.
+   *
+   * @param site      site (with prefix included)
+   * @param dateRange {@link DateRange}
+   * @return {@link Map} impressions per day, days without data are missing
+   * @throws IOException when query fails
+   */
+  Map<LocalDate, Long> probe(String site, DateRange dateRange) throws IOException {
+    SearchAnalyticsQueryRequest request = new SearchAnalyticsQueryRequest();
+    request.setStartDate(dateRange.getStartDate().toString());
+    request.setEndDate(dateRange.getEndDate().toString());
+    request.setDimensions(Collections.singletonList(SearchConsoleConstants.DATE_DIMENSION));
+    request.setDimensionFilterGroups(dimensionFilterGroups);
+    request.setRowLimit(SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT);
+    SearchAnalyticsQueryResponse response = queryExecutor.execute(site, service.searchanalytics().query(site, request));
+
+    Map<LocalDate, Long> daily = new HashMap<>();
+    if (response.getRows() != null) {
+      for (ApiDataRow row : response.getRows()) {
+        long impressions = row.getImpressions() == null ? 0 : row.getImpressions().longValue();
+        daily.put(LocalDate.parse(row.getKeys().get(0)), impressions);
+      }
+    }
+    return daily;
+  }
+
+  /**
+   * Sends a single row query for a site.
+   *
+   * @param site       site (with prefix included)
+   * @param window     {@link DateRange}
+   * @param dimensions dimensions to be read
+   * @param startRow   row to check
+   * @return whether the site has a row at the start row
+   * @throws IOException when query fails
+   */
+  public boolean hasRows(String site, DateRange window, List<String> dimensions, int startRow) throws IOException {
+    SearchAnalyticsQueryRequest request = new SearchAnalyticsQueryRequest();
+    request.setStartDate(window.getStartDate().toString());
+    request.setEndDate(window.getEndDate().toString());
+    request.setDimensions(dimensions);
+    request.setDimensionFilterGroups(dimensionFilterGroups);
+    request.setStartRow(startRow);
+    request.setRowLimit(1);
+    SearchAnalyticsQueryResponse response = queryExecutor.execute(site, service.searchanalytics().query(site, request));
+    return response.getRows() != null && !response.getRows().isEmpty();
+  }
+
+  /**
+   * Every day costs at least one, as it still has to be requested even if it has no data.
+   */
+  private static long getWindowCost(Map<LocalDate, Long> daily, DateRange window) {
+    long cost = 0;
+    for (LocalDate day = window.getStartDate(); !day.isAfter(window.getEndDate()); day = day.plusDays(1)) {
+      cost += Math.max(daily.getOrDefault(day, 0L), 1);
+    }
+    return cost;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded dictionary of dimension values shared by the pages of a split, so a value repeated across pages is
+ * held by a single {@link String} instance. Values seen once the dictionary is full are not added and are
+ * returned as they are. Safe for use by concurrent fetches.
+ */
+public class SearchConsoleDictionary {
+
+  private final int maxSize;
+  private final Map<String, String> values = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private long recordedHits;
+  private long recordedMisses;
+
+  public SearchConsoleDictionary(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @param value dimension value
+   * @return instance of the value held by the dictionary, the value itself when it is new
+   */
+  public String intern(String value) {
+    String interned = values.get(value);
+    if (interned != null) {
+      hits.incrementAndGet();
+      return interned;
+    }
+    misses.incrementAndGet();
+    if (values.size() >= maxSize) {
+      return value;
+    }
+    interned = values.putIfAbsent(value, value);
+    return interned == null ? value : interned;
+  }
+
+  public int getSize() {
+    return values.size();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Records hits and misses since the previous call.
+   *
+   * @param metrics {@link SearchConsoleFetchMetrics} of the split
+   */
+  public synchronized void record(SearchConsoleFetchMetrics metrics) {
+    long currentHits = hits.get();
+    long currentMisses = misses.get();
+    metrics.count(SearchConsoleFetchMetrics.DICTIONARY_HITS, currentHits - recordedHits);
+    metrics.count(SearchConsoleFetchMetrics.DICTIONARY_MISSES, currentMisses - recordedMisses);
+    recordedHits = currentHits;
+    recordedMisses = currentMisses;
+  }
+
+  /**
+   * @return share of looked up values found in the dictionary, 0 when nothing was looked up
+   */
+  public double getHitRate() {
+    long lookups = hits.get() + misses.get();
+    return lookups == 0 ? 0 : (double) hits.get() / lookups;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * Counters and timers of fetching search analytics data of a single stage and run. Readers, their fetch threads
+ * and the HTTP transport record into the counters of their scope, which are drained by the
+ * {@link SearchConsoleSource} of the same scope into its stage metrics, as readers have no access to them.
+ * <p>
+ * The HTTP transport is shared by all stages of the executor, so it records into the counters bound to the
+ * thread sending the request. Counters of scopes not used for a while are removed, looked for at most once a
+ * minute.
+ */
+public class SearchConsoleFetchMetrics {
+
+  public static final String REQUESTS = "api.requests";
+  public static final String PAGES = "api.pages";
+  public static final String ROWS = "api.rows";
+  public static final String BYTES = "api.bytes";
+  public static final String REQUEST_TIME = "api.request.time.ms";
+  public static final String RATE_LIMITED = "api.rate.limited";
+  public static final String SERVER_ERRORS = "api.server.errors";
+  public static final String TIMEOUTS = "api.timeouts";
+  public static final String RETRIES = "api.retries";
+  public static final String RATE_LIMITER_WAIT_TIME = "rate.limiter.wait.time.ms";
+  public static final String CACHED_PAGES = "cache.pages";
+  public static final String DICTIONARY_HITS = "dictionary.hits";
+  public static final String DICTIONARY_MISSES = "dictionary.misses";
+  // upper bounds of request latency buckets, the last bucket has none
+  static final long[] LATENCY_BUCKETS_MILLIS = {250, 1000, 5000};
+  static final String[] LATENCY_BUCKETS = {
+    "api.latency.under.250ms", "api.latency.under.1s", "api.latency.under.5s", "api.latency.over.5s"};
+
+  private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(30);
+  private static final long EVICTION_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final AtomicLong LAST_EVICTION_NANOS = new AtomicLong(System.nanoTime());
+  private static final Map<String, SearchConsoleFetchMetrics> SCOPES = new ConcurrentHashMap<>();
+  private static final ThreadLocal<SearchConsoleFetchMetrics> CURRENT = new ThreadLocal<>();
+
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  // timers are recorded in nanoseconds and drained in milliseconds
+  private final Map<String, LongAdder> timers = new ConcurrentHashMap<>();
+  private volatile long lastUsedNanos = System.nanoTime();
+
+  /**
+   * @param scope scope of the stage and run, see {@link #getScope}
+   * @return counters shared by the readers and the source of the scope in this JVM
+   */
+  public static SearchConsoleFetchMetrics of(String scope) {
+    long now = System.nanoTime();
+    long lastEviction = LAST_EVICTION_NANOS.get();
+    if (now - lastEviction >= EVICTION_INTERVAL_NANOS && LAST_EVICTION_NANOS.compareAndSet(lastEviction, now)) {
+      SCOPES.values().removeIf(metrics -> now - metrics.lastUsedNanos > IDLE_NANOS);
+    }
+    SearchConsoleFetchMetrics metrics = SCOPES.computeIfAbsent(scope, key -> new SearchConsoleFetchMetrics());
+    metrics.lastUsedNanos = now;
+    return metrics;
+  }
+
+  /**
+   * @param conf job configuration
+   * @return counters of the scope set by {@link SearchConsoleInputFormatProvider}
+   */
+  public static SearchConsoleFetchMetrics of(Configuration conf) {
+    return of(conf.get(SearchConsoleConstants.METRICS_SCOPE_PROPERTY_NAME, ""));
+  }
+
+  /**
+   * @return scope identifying a stage of a pipeline run
+   */
+  public static String getScope(String namespace, String pipelineName, String stageName, long logicalStartTime) {
+    return String.join(":", namespace, pipelineName, stageName, String.valueOf(logicalStartTime));
+  }
+
+  /**
+   * Binds counters to the current thread, so that the shared HTTP transport records into them.
+   *
+   * @param metrics counters the requests of the thread are recorded to, null to unbind
+   * @return counters bound before, null when there were none
+   */
+  @Nullable
+  static SearchConsoleFetchMetrics bind(@Nullable SearchConsoleFetchMetrics metrics) {
+    SearchConsoleFetchMetrics previous = CURRENT.get();
+    if (metrics == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(metrics);
+    }
+    return previous;
+  }
+
+  /**
+   * @return counters bound to the current thread, null when there are none
+   */
+  @Nullable
+  static SearchConsoleFetchMetrics current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * @param name  name of the counter
+   * @param delta value added to the counter
+   */
+  public void count(String name, long delta) {
+    counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+  }
+
+  /**
+   * @param name  name of the timer
+   * @param nanos time added to the timer
+   */
+  public void time(String name, long nanos) {
+    timers.computeIfAbsent(name, key -> new LongAdder()).add(nanos);
+  }
+
+  /**
+   * Records time of an API request, both to the total request time and to its latency bucket.
+   *
+   * @param nanos time of the request
+   */
+  public void timeRequest(long nanos) {
+    time(REQUEST_TIME, nanos);
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    int bucket = 0;
+    while (bucket < LATENCY_BUCKETS_MILLIS.length && millis >= LATENCY_BUCKETS_MILLIS[bucket]) {
+      bucket++;
+    }
+    count(LATENCY_BUCKETS[bucket], 1);
+  }
+
+  /**
+   * @param name name of the counter or timer
+   * @return value recorded since the last drain, timers in milliseconds
+   */
+  public long get(String name) {
+    LongAdder timer = timers.get(name);
+    if (timer != null) {
+      return TimeUnit.NANOSECONDS.toMillis(timer.sum());
+    }
+    LongAdder counter = counters.get(name);
+    return counter == null ? 0 : counter.sum();
+  }
+
+  /**
+   * Passes values recorded since the last drain to the consumer and resets them. Values which do not fit into
+   * an int are passed in several parts.
+   *
+   * @param consumer consumer of metric name and value
+   */
+  public void drain(ObjIntConsumer<String> consumer) {
+    lastUsedNanos = System.nanoTime();
+    counters.forEach((name, counter) -> emit(name, counter.sumThenReset(), consumer));
+    timers.forEach((name, timer) -> {
+      long nanos = timer.sumThenReset();
+      long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+      // the remainder of the millisecond is kept for the next drain
+      timer.add(nanos - TimeUnit.MILLISECONDS.toNanos(millis));
+      emit(name, millis, consumer);
+    });
+  }
+
+  private static void emit(String name, long value, ObjIntConsumer<String> consumer) {
+    while (value > 0) {
+      int part = (int) Math.min(value, Integer.MAX_VALUE);
+      consumer.accept(name, part);
+      value -= part;
+    }
+  }
+}
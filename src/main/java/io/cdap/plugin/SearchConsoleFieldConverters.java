@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates {@link SearchConsoleFieldConverter} specialized for the Java type of the source value and the type of
+ * the output field. Numbers are converted directly, parsing the string representation of the value is only
+ * used for values of other types. Logical types are converted by {@link SearchConsoleUtils#convertField}.
+ * <p>
+ * Dates and timestamps are memoized, as an extract has only a few distinct days. Converters of dates are not
+ * thread safe, every transform plan has its own.
+ */
+public final class SearchConsoleFieldConverters {
+
+  static final int MAX_CACHED_DATES = 1024;
+  private static final SearchConsoleFieldConverter IDENTITY = value -> value;
+
+  private SearchConsoleFieldConverters() {
+  }
+
+  /**
+   * @param sourceType  Java type of the values, {@link Object} when not known
+   * @param fieldSchema {@link Schema} of the output field
+   * @return {@link SearchConsoleFieldConverter}
+   */
+  public static SearchConsoleFieldConverter of(Class<?> sourceType, Schema fieldSchema) {
+    Schema schema = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
+    Schema.LogicalType logicalType = schema.getLogicalType();
+    if (logicalType != null) {
+      SearchConsoleFieldConverter converter = value -> SearchConsoleUtils.convertField(value, schema);
+      switch (logicalType) {
+        case DATE:
+        case TIMESTAMP_MILLIS:
+        case TIMESTAMP_MICROS:
+          return new MemoizingConverter(converter, MAX_CACHED_DATES);
+        default:
+          return converter;
+      }
+    }
+    switch (schema.getType()) {
+      case DOUBLE:
+        return sourceType == Double.class ? IDENTITY : SearchConsoleFieldConverters::toDouble;
+      case FLOAT:
+        return sourceType == Float.class ? IDENTITY : SearchConsoleFieldConverters::toFloat;
+      case LONG:
+        return sourceType == Long.class ? IDENTITY : SearchConsoleFieldConverters::toLong;
+      case INT:
+        return sourceType == Integer.class ? IDENTITY : SearchConsoleFieldConverters::toInt;
+      case BOOLEAN:
+        return sourceType == Boolean.class ? IDENTITY : value -> value instanceof Boolean
+          ? value : Boolean.valueOf(value.toString());
+      case STRING:
+        return sourceType == String.class ? IDENTITY : Object::toString;
+      default:
+        return IDENTITY;
+    }
+  }
+
+  private static Object toDouble(Object value) {
+    if (value instanceof Double) {
+      return value;
+    }
+    return value instanceof Number ? ((Number) value).doubleValue() : Double.valueOf(value.toString());
+  }
+
+  private static Object toFloat(Object value) {
+    if (value instanceof Float) {
+      return value;
+    }
+    return value instanceof Number ? ((Number) value).floatValue() : Float.valueOf(value.toString());
+  }
+
+  private static Object toLong(Object value) {
+    if (value instanceof Long) {
+      return value;
+    }
+    if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return Long.valueOf(((Number) value).longValue());
+    }
+    if (isWholeDouble(value)) {
+      // metrics are doubles, but impressions and clicks are always whole numbers
+      return Long.valueOf((long) ((Number) value).doubleValue());
+    }
+    return Long.valueOf(value.toString());
+  }
+
+  private static Object toInt(Object value) throws IOException {
+    if (value instanceof Integer) {
+      return value;
+    }
+    try {
+      if (value instanceof Long) {
+        return Integer.valueOf(Math.toIntExact((Long) value));
+      }
+      if (value instanceof Short || value instanceof Byte) {
+        return Integer.valueOf(((Number) value).intValue());
+      }
+      if (isWholeDouble(value)) {
+        return Integer.valueOf(Math.toIntExact((long) ((Number) value).doubleValue()));
+      }
+    } catch (ArithmeticException e) {
+      throw new IOException("Field type INT has value that is too large: " + value);
+    }
+    return Integer.valueOf(value.toString());
+  }
+
+  private static boolean isWholeDouble(Object value) {
+    if (!(value instanceof Double || value instanceof Float)) {
+      return false;
+    }
+    double number = ((Number) value).doubleValue();
+    return number == Math.rint(number) && Math.abs(number) < Long.MAX_VALUE;
+  }
+
+  /**
+   * Remembers converted values of the most recently used source values.
+   */
+  private static final class MemoizingConverter implements SearchConsoleFieldConverter {
+    private final SearchConsoleFieldConverter converter;
+    private final Map<Object, Object> cache;
+
+    private MemoizingConverter(SearchConsoleFieldConverter converter, int maxSize) {
+      this.converter = converter;
+      this.cache = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+          return size() > maxSize;
+        }
+      };
+    }
+
+    @Override
+    public Object convert(Object value) throws IOException {
+      Object converted = cache.get(value);
+      if (converted == null) {
+        converted = converter.convert(value);
+        cache.put(value, converted);
+      }
+      return converted;
+    }
+  }
+}
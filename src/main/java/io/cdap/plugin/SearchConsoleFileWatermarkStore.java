@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link SearchConsoleWatermarkStore} keeping watermarks in a JSON file of any Hadoop file system, such as the
+ * local file system or HDFS. The file is replaced by writing a temporary file next to it and renaming it, so
+ * a failed write does not lose the previous watermarks, and the temporary file is read when a write failed
+ * after the previous file was removed.
+ */
+public class SearchConsoleFileWatermarkStore implements SearchConsoleWatermarkStore {
+
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  private static final Type WATERMARKS_TYPE = new TypeToken<Map<String, String>>() { }.getType();
+
+  private final Path path;
+  private final Configuration configuration;
+
+  public SearchConsoleFileWatermarkStore(String path, Configuration configuration) {
+    this.path = new Path(path);
+    this.configuration = configuration;
+  }
+
+  @Override
+  public Map<String, LocalDate> load() throws IOException {
+    FileSystem fileSystem = path.getFileSystem(configuration);
+    Map<String, LocalDate> watermarks = new TreeMap<>();
+    Path file = fileSystem.exists(path) ? path : getTemporaryPath();
+    if (!fileSystem.exists(file)) {
+      return watermarks;
+    }
+    try (Reader reader = new InputStreamReader(fileSystem.open(file), StandardCharsets.UTF_8)) {
+      Map<String, String> dates = GSON.fromJson(reader, WATERMARKS_TYPE);
+      if (dates != null) {
+        dates.forEach((site, date) -> watermarks.put(site, LocalDate.parse(date)));
+      }
+    } catch (RuntimeException e) {
+      throw new IOException(String.format("Failed to parse watermarks file '%s'.", file), e);
+    }
+    return watermarks;
+  }
+
+  @Override
+  public void save(Map<String, LocalDate> watermarks) throws IOException {
+    FileSystem fileSystem = path.getFileSystem(configuration);
+    Map<String, String> dates = new TreeMap<>();
+    watermarks.forEach((site, date) -> dates.put(site, date.toString()));
+    Path temporary = getTemporaryPath();
+    try (FSDataOutputStream out = fileSystem.create(temporary, true)) {
+      out.write(GSON.toJson(dates, WATERMARKS_TYPE).getBytes(StandardCharsets.UTF_8));
+    }
+    if (fileSystem.exists(path) && !fileSystem.delete(path, false)) {
+      throw new IOException(String.format("Failed to replace watermarks file '%s'.", path));
+    }
+    if (!fileSystem.rename(temporary, path)) {
+      throw new IOException(String.format("Failed to write watermarks file '%s'.", path));
+    }
+  }
+
+  private Path getTemporaryPath() {
+    return new Path(path.getParent(), "." + path.getName() + ".tmp");
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.ssl.SSLContexts;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProxySelector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP transport of Search Console API clients, which keeps a pool of keep-alive connections. Connections are
+ * reused by following requests, TLS sessions are resumed by new connections, responses are requested gzip
+ * compressed and every request has explicit connect and read timeouts, so a stalled socket fails the request
+ * rather than hanging the split.
+ * <p>
+ * Transports are shared by all clients in a JVM with the same settings. Bytes received, as sent over the wire,
+ * are recorded to the {@link SearchConsoleFetchMetrics}.
+ * <p>
+ * The client library only accepts the pre 4.3 client API of Apache HttpClient, which is deprecated. Its classes
+ * are referred to by their qualified names, as imports of deprecated classes cannot be suppressed.
+ */
+@SuppressWarnings("deprecation")
+public class SearchConsoleHttpTransport {
+
+  private static final ConcurrentMap<String, SearchConsoleHttpTransport> TRANSPORTS = new ConcurrentHashMap<>();
+
+  private final HttpTransport transport;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong connections = new AtomicLong();
+
+  /**
+   * @param maxConnections       maximum number of pooled connections
+   * @param connectTimeoutMillis timeout of connecting and of waiting for a pooled connection
+   * @param readTimeoutMillis    timeout of reading from the socket
+   * @param keepAliveMillis      how long an idle connection is kept, unless the server asks for less
+   */
+  SearchConsoleHttpTransport(int maxConnections, int connectTimeoutMillis, int readTimeoutMillis,
+                             long keepAliveMillis) {
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+
+    org.apache.http.conn.scheme.SchemeRegistry schemes = new org.apache.http.conn.scheme.SchemeRegistry();
+    schemes.register(new org.apache.http.conn.scheme.Scheme(
+      "http", 80, org.apache.http.conn.scheme.PlainSocketFactory.getSocketFactory()));
+    // sessions are cached by the context, so new connections to the same host resume them
+    schemes.register(new org.apache.http.conn.scheme.Scheme(
+      "https", 443, new org.apache.http.conn.ssl.SSLSocketFactory(SSLContexts.createDefault())));
+    org.apache.http.impl.conn.PoolingClientConnectionManager connectionManager =
+      new org.apache.http.impl.conn.PoolingClientConnectionManager(schemes) {
+        @Override
+        protected org.apache.http.conn.ClientConnectionOperator createConnectionOperator(
+          org.apache.http.conn.scheme.SchemeRegistry registry) {
+          return new org.apache.http.impl.conn.DefaultClientConnectionOperator(registry) {
+            @Override
+            public org.apache.http.conn.OperatedClientConnection createConnection() {
+              connections.incrementAndGet();
+              return super.createConnection();
+            }
+          };
+        }
+      };
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+    org.apache.http.params.HttpParams params = new org.apache.http.params.BasicHttpParams();
+    org.apache.http.params.HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+    org.apache.http.params.HttpConnectionParams.setConnectionTimeout(params, connectTimeoutMillis);
+    org.apache.http.params.HttpConnectionParams.setSoTimeout(params, readTimeoutMillis);
+    org.apache.http.params.HttpConnectionParams.setSoKeepalive(params, true);
+    org.apache.http.params.HttpConnectionParams.setTcpNoDelay(params, true);
+    // closed sockets are detected when a pooled connection is leased
+    org.apache.http.params.HttpConnectionParams.setStaleCheckingEnabled(params, true);
+    params.setBooleanParameter(org.apache.http.client.params.ClientPNames.HANDLE_REDIRECTS, false);
+
+    org.apache.http.impl.client.DefaultHttpClient client =
+      new org.apache.http.impl.client.DefaultHttpClient(connectionManager, params);
+    client.setRoutePlanner(
+      new org.apache.http.impl.conn.ProxySelectorRoutePlanner(schemes, ProxySelector.getDefault()));
+    // connections idle for longer than the keep alive are closed when leased rather than reused
+    client.setKeepAliveStrategy((response, context) -> {
+      long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return serverKeepAlive < 0 ? keepAliveMillis : Math.min(serverKeepAlive, keepAliveMillis);
+    });
+    client.addRequestInterceptor((request, context) -> requests.incrementAndGet());
+    client.addResponseInterceptor((response, context) -> {
+      if (response.getEntity() != null) {
+        response.setEntity(new CountingEntity(response.getEntity()));
+      }
+    });
+    this.transport = new ApacheHttpTransport(client);
+  }
+
+  /**
+   * @param config {@link SearchConsoleSourceConfig}
+   * @return transport shared by all clients in this JVM with the transport settings of the configuration
+   */
+  public static SearchConsoleHttpTransport of(SearchConsoleSourceConfig config) {
+    int maxConnections = config.getMaxConnections();
+    int connectTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(config.getConnectTimeoutSeconds());
+    int readTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(config.getReadTimeoutSeconds());
+    long keepAliveMillis = TimeUnit.SECONDS.toMillis(config.getKeepAliveSeconds());
+    return TRANSPORTS.computeIfAbsent(
+      getKey(config), key -> new SearchConsoleHttpTransport(maxConnections, connectTimeoutMillis, readTimeoutMillis,
+                                                            keepAliveMillis));
+  }
+
+  /**
+   * @param config {@link SearchConsoleSourceConfig}
+   * @return key of the transport settings of the configuration
+   */
+  static String getKey(SearchConsoleSourceConfig config) {
+    return config.getMaxConnections() + ":" + config.getConnectTimeoutSeconds() + ":"
+      + config.getReadTimeoutSeconds() + ":" + config.getKeepAliveSeconds();
+  }
+
+  public HttpTransport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Sets timeouts and requests gzip compressed response.
+   *
+   * @param request {@link HttpRequest}
+   */
+  public void initialize(HttpRequest request) {
+    request.setConnectTimeout(connectTimeoutMillis);
+    request.setReadTimeout(readTimeoutMillis);
+    request.getHeaders().setAcceptEncoding("gzip");
+  }
+
+  /**
+   * @return number of requests sent by the transport
+   */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * @return number of connections opened by the transport
+   */
+  public long getConnections() {
+    return connections.get();
+  }
+
+  /**
+   * Entity recording bytes read from its content.
+   */
+  private static final class CountingEntity extends HttpEntityWrapper {
+
+    private CountingEntity(HttpEntity entity) {
+      super(entity);
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+      // content is opened by the thread which sent the request
+      SearchConsoleFetchMetrics metrics = SearchConsoleFetchMetrics.current();
+      if (metrics == null) {
+        return super.getContent();
+      }
+      return new FilterInputStream(super.getContent()) {
+        @Override
+        public int read() throws IOException {
+          int read = super.read();
+          if (read >= 0) {
+            metrics.count(SearchConsoleFetchMetrics.BYTES, 1);
+          }
+          return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+          int read = super.read(buffer, offset, length);
+          if (read > 0) {
+            metrics.count(SearchConsoleFetchMetrics.BYTES, read);
+          }
+          return read;
+        }
+      };
+    }
+  }
+}
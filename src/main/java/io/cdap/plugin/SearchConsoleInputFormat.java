@@ -15,8 +15,8 @@
  */
 package io.cdap.plugin;
 
-import com.google.api.services.webmasters.model.ApiDataRow;
-
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputFormat;
@@ -26,16 +26,20 @@ import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
- * InputFormat for mapreduce job, which provides split of data per site.
+ * InputFormat for mapreduce job, which provides split of data per site and date window. In incremental mode
+ * only the days of every site after its watermark are planned.
  */
-public class SearchConsoleInputFormat extends InputFormat<NullWritable, ApiDataRow> {
+public class SearchConsoleInputFormat extends InputFormat<NullWritable, SearchConsoleRow> {
+
+  private static final Gson GSON = new Gson();
 
   @Override
   public List<InputSplit> getSplits(final JobContext jobContext)
@@ -44,34 +48,117 @@ public class SearchConsoleInputFormat extends InputFormat<NullWritable, ApiDataR
     SearchConsoleSourceConfig searchConsoleSourceConfig = SearchConsoleUtils
       .extractPropertiesFromConfig(configuration);
 
-    List<String> sitesUrls = new ArrayList<>(SearchConsoleUtils.getSitesUrls(searchConsoleSourceConfig));
-    final int totalSites = sitesUrls.size();
-    final int numSplits = Math.min(searchConsoleSourceConfig.getNumSplits(), totalSites);
-    final int perPage = (int) Math.ceil((double) totalSites / (double) numSplits);
-
+    List<String> sitesUrls = searchConsoleSourceConfig.isIncremental()
+      ? getIncrementalSites(searchConsoleSourceConfig, configuration)
+      : new ArrayList<>(SearchConsoleUtils.getSitesUrls(searchConsoleSourceConfig));
     List<InputSplit> splits = new ArrayList<>();
-    final AtomicInteger counter = new AtomicInteger();
-    final Collection<List<String>> result = sitesUrls.stream()
-      .collect(Collectors.groupingBy(it -> counter.getAndIncrement() / perPage))
-      .values();
+    if (sitesUrls.isEmpty()) {
+      return splits;
+    }
+    if (!searchConsoleSourceConfig.isIncremental()) {
+      plan(searchConsoleSourceConfig, sitesUrls, searchConsoleSourceConfig.getDateRange(), jobContext)
+        .forEach(queries -> splits.add(new SearchConsoleSplit(queries)));
+      return splits;
+    }
+    Map<String, LocalDate> watermarks = SearchConsoleWatermarkStore.of(searchConsoleSourceConfig.getWatermarkPath(),
+                                                                       configuration).load();
+    Map<DateRange, List<String>> missingRanges = SearchConsoleSplitPlanner.getMissingRanges(
+      sitesUrls, watermarks, searchConsoleSourceConfig.getDateRange(),
+      getIncrementalEndDate(searchConsoleSourceConfig, configuration));
+    for (Map.Entry<DateRange, List<String>> missing : missingRanges.entrySet()) {
+      plan(searchConsoleSourceConfig, missing.getValue(), missing.getKey(), jobContext)
+        .forEach(queries -> splits.add(new SearchConsoleSplit(queries)));
+    }
+    return splits;
+  }
 
-    result.forEach(siteGroup -> splits.add(generateSplit(siteGroup)));
+  /**
+   * @param config        {@link SearchConsoleSourceConfig}
+   * @param configuration {@link Configuration} of the job
+   * @return last date read by the incremental run, as chosen when the run was prepared
+   */
+  static LocalDate getIncrementalEndDate(SearchConsoleSourceConfig config, Configuration configuration) {
+    String endDate = configuration.get(SearchConsoleConstants.INCREMENTAL_END_DATE_PROPERTY_NAME);
+    return endDate == null
+      ? config.getIncrementalEndDate(LocalDate.now(ZoneId.of(SearchConsoleConstants.SEARCH_CONSOLE_TIME_ZONE)))
+      : LocalDate.parse(endDate);
+  }
 
-    return splits;
+  /**
+   * @param config        {@link SearchConsoleSourceConfig}
+   * @param configuration {@link Configuration} of the job
+   * @return sites read by the incremental run, as chosen when the run was prepared, so that watermarks are only
+   *         advanced for sites which were planned
+   * @throws IOException when sites cannot be listed
+   */
+  static List<String> getIncrementalSites(SearchConsoleSourceConfig config, Configuration configuration)
+    throws IOException {
+    String sites = configuration.get(SearchConsoleConstants.INCREMENTAL_SITES_PROPERTY_NAME);
+    return sites == null
+      ? new ArrayList<>(SearchConsoleUtils.getSitesUrls(config))
+      : GSON.fromJson(sites, new TypeToken<List<String>>() { }.getType());
+  }
+
+  private List<List<SearchConsoleQuery>> plan(SearchConsoleSourceConfig config, List<String> sitesUrls,
+                                              DateRange dateRange, JobContext jobContext) throws IOException {
+    SearchConsoleSplitPlanner planner = new SearchConsoleSplitPlanner(config.getNumSplits());
+    Integer rowsPerSplit = config.getRowsPerSplit();
+    if (SearchConsoleConstants.SPLIT_STRATEGY_ESTIMATED_COST.equals(config.getSplitStrategy())) {
+      // more windows than splits are fine here, bin-packing limits the number of splits
+      List<DateRange> windows = getDateWindows(config, dateRange, false);
+      SearchConsoleCostEstimator estimator = newEstimator(config, jobContext);
+      List<SearchConsoleSplitPlanner.WorkUnit> units = estimator.estimate(sitesUrls, dateRange, windows);
+      if (rowsPerSplit != null) {
+        units = SearchConsoleSplitPlanner.splitRowRanges(units, rowsPerSplit, newRowProbe(config, estimator));
+      }
+      return planner.planByCost(units);
+    }
+    List<List<SearchConsoleQuery>> splits = planner.planBySiteCount(sitesUrls,
+                                                                    getDateWindows(config, dateRange, true));
+    if (rowsPerSplit == null) {
+      return splits;
+    }
+    return SearchConsoleSplitPlanner.splitQueryRowRanges(
+      splits, rowsPerSplit, newRowProbe(config, newEstimator(config, jobContext)));
+  }
+
+  private static SearchConsoleCostEstimator newEstimator(SearchConsoleSourceConfig config, JobContext jobContext)
+    throws IOException {
+    return new SearchConsoleCostEstimator(
+      SearchConsoleUtils.generateService(config),
+      SearchConsoleQueryExecutor.of(config, String.valueOf(jobContext.getJobID()),
+                                    SearchConsoleFetchMetrics.of(jobContext.getConfiguration())),
+      DimensionFilter.toFilterGroups(config.getDimensionFilters()));
+  }
+
+  private static SearchConsoleSplitPlanner.RowProbe newRowProbe(SearchConsoleSourceConfig config,
+                                                                SearchConsoleCostEstimator estimator) {
+    List<String> dimensions = config.getDimensions();
+    return (site, window, startRow) -> estimator.hasRows(site, window, dimensions, startRow);
   }
 
   /**
-   * Generate {@link SearchConsoleSplit} from list of sites
+   * Divides date range into windows of configured size.
    *
-   * @param sites {@link List<String>} list of sites (with prefix included)
-   * @return {@link SearchConsoleSplit}
+   * @param config    {@link SearchConsoleSourceConfig}
+   * @param dateRange {@link DateRange} to be read
+   * @param widen     whether windows are widened when there would be more windows than desired number of splits
+   * @return {@link List<DateRange>} consecutive date windows
    */
-  private SearchConsoleSplit generateSplit(List<String> sites) {
-    return new SearchConsoleSplit(new SearchConsoleQuery(sites));
+  private List<DateRange> getDateWindows(SearchConsoleSourceConfig config, DateRange dateRange, boolean widen) {
+    if (config.getDateWindowDays() == null) {
+      return Collections.singletonList(dateRange);
+    }
+    if (!widen) {
+      return dateRange.split(config.getDateWindowDays());
+    }
+    long minWindowDays = (long) Math.ceil((double) dateRange.getDays()
+                                            / (double) Math.max(config.getNumSplits(), 1));
+    return dateRange.split(Math.max(config.getDateWindowDays(), minWindowDays));
   }
 
   @Override
-  public RecordReader<NullWritable, ApiDataRow> createRecordReader(final InputSplit inputSplit,
+  public RecordReader<NullWritable, SearchConsoleRow> createRecordReader(final InputSplit inputSplit,
                                                                    final TaskAttemptContext taskAttemptContext) {
     return new SearchConsoleRecordReader();
   }
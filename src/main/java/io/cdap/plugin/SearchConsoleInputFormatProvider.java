@@ -20,9 +20,16 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.cdap.cdap.api.data.batch.InputFormatProvider;
+import io.cdap.cdap.api.plugin.PluginProperties;
 
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 /**
  * InputFormatProvider used by cdap to provide configurations to mapreduce job
  */
@@ -32,10 +39,39 @@ public class SearchConsoleInputFormatProvider implements InputFormatProvider {
   private static final Gson GSON = new GsonBuilder().create();
 
   SearchConsoleInputFormatProvider(SearchConsoleSourceConfig config) {
-    this.conf = new ImmutableMap.Builder<String, String>()
+    this(config, Collections.emptyMap(), null, null, null);
+  }
+
+  /**
+   * @param config             {@link SearchConsoleSourceConfig}
+   * @param overrides          properties used by the job instead of the configured ones, such as the
+   *                           dimensions projected by the output schema
+   * @param metricsScope       scope of the {@link SearchConsoleFetchMetrics} of the stage and run
+   * @param incrementalEndDate last date read by an incremental run, null in full mode
+   * @param incrementalSites   sites read by an incremental run, null in full mode
+   */
+  SearchConsoleInputFormatProvider(SearchConsoleSourceConfig config, Map<String, String> overrides,
+                                   @Nullable String metricsScope, @Nullable LocalDate incrementalEndDate,
+                                   @Nullable List<String> incrementalSites) {
+    PluginProperties properties = config.getProperties();
+    if (!overrides.isEmpty()) {
+      Map<String, String> overridden = new HashMap<>(properties.getProperties());
+      overridden.putAll(overrides);
+      properties = PluginProperties.builder().addAll(overridden).build();
+    }
+    ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder<String, String>()
       .put(SearchConsoleConstants.CONFIGURATION_PROPERTY_NAME,
-           GSON.toJson(config.getProperties()))
-      .build();
+           GSON.toJson(properties));
+    if (metricsScope != null) {
+      builder.put(SearchConsoleConstants.METRICS_SCOPE_PROPERTY_NAME, metricsScope);
+    }
+    if (incrementalEndDate != null) {
+      builder.put(SearchConsoleConstants.INCREMENTAL_END_DATE_PROPERTY_NAME, incrementalEndDate.toString());
+    }
+    if (incrementalSites != null) {
+      builder.put(SearchConsoleConstants.INCREMENTAL_SITES_PROPERTY_NAME, GSON.toJson(incrementalSites));
+    }
+    this.conf = builder.build();
   }
 
   @Override
@@ -0,0 +1,247 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Page of search analytics rows of a single site held column by column. Metrics are primitive columns,
+ * dimension values are columns of codes into a dictionary of the distinct values of the page, and site and
+ * its type are stored once. Distinct values may be shared with other pages through a
+ * {@link SearchConsoleDictionary}. Rows are read through a {@link SearchConsoleRow} cursor.
+ */
+public final class SearchConsolePage {
+
+  static final int MISSING_KEY = -1;
+
+  private final String site;
+  private final String siteType;
+  private final int size;
+  private final int[][] keyCodes;
+  private final String[] dictionary;
+  private final double[] clicks;
+  private final double[] impressions;
+  private final double[] ctr;
+  private final double[] position;
+
+  private SearchConsolePage(Builder builder) {
+    this.site = builder.site;
+    this.siteType = builder.siteType;
+    this.size = builder.size;
+    // columns of the builder have spare capacity, pages held ahead of the reader keep only their rows
+    this.keyCodes = new int[builder.keyCodes.length][];
+    for (int i = 0; i < keyCodes.length; i++) {
+      keyCodes[i] = Arrays.copyOf(builder.keyCodes[i], size);
+    }
+    this.dictionary = builder.dictionary.toArray(new String[0]);
+    this.clicks = Arrays.copyOf(builder.clicks, size);
+    this.impressions = Arrays.copyOf(builder.impressions, size);
+    this.ctr = Arrays.copyOf(builder.ctr, size);
+    this.position = Arrays.copyOf(builder.position, size);
+  }
+
+  /**
+   * @param site           site url the rows belong to
+   * @param siteType       type of the site
+   * @param dimensionCount number of requested dimensions, further row keys are ignored
+   * @return {@link Builder}
+   */
+  public static Builder builder(String site, String siteType, int dimensionCount) {
+    return new Builder(site, siteType, dimensionCount, null);
+  }
+
+  /**
+   * @param site           site url the rows belong to
+   * @param siteType       type of the site
+   * @param dimensionCount number of requested dimensions, further row keys are ignored
+   * @param dictionary     {@link SearchConsoleDictionary} distinct values are looked up in, null to keep them
+   *                       as parsed
+   * @return {@link Builder}
+   */
+  public static Builder builder(String site, String siteType, int dimensionCount,
+                                @Nullable SearchConsoleDictionary dictionary) {
+    return new Builder(site, siteType, dimensionCount, dictionary);
+  }
+
+  public String getSite() {
+    return site;
+  }
+
+  public String getSiteType() {
+    return siteType;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int getDimensionCount() {
+    return keyCodes.length;
+  }
+
+  /**
+   * @return number of distinct dimension values of the page
+   */
+  public int getDictionarySize() {
+    return dictionary.length;
+  }
+
+  /**
+   * @return code of the value of the dimension in the row, unique within the page, {@link #MISSING_KEY} when
+   * the row has no value for it
+   */
+  public int getKeyCode(int row, int dimension) {
+    return keyCodes[dimension][row];
+  }
+
+  /**
+   * @return value of the dimension in the row, null when the row has no value for it
+   */
+  public String getKey(int row, int dimension) {
+    int code = keyCodes[dimension][row];
+    return code == MISSING_KEY ? null : dictionary[code];
+  }
+
+  public double getClicks(int row) {
+    return clicks[row];
+  }
+
+  public double getImpressions(int row) {
+    return impressions[row];
+  }
+
+  public double getCtr(int row) {
+    return ctr[row];
+  }
+
+  public double getPosition(int row) {
+    return position[row];
+  }
+
+  /**
+   * Appends rows to the columns of a page. Values of the current row are set one by one and the row is
+   * appended by {@link #endRow()}. Metrics which are not set are {@link Double#NaN}.
+   */
+  public static final class Builder {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String site;
+    private final String siteType;
+    @Nullable
+    private final SearchConsoleDictionary sharedDictionary;
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private int[][] keyCodes;
+    private double[] clicks;
+    private double[] impressions;
+    private double[] ctr;
+    private double[] position;
+    private int size;
+
+    private Builder(String site, String siteType, int dimensionCount,
+                    @Nullable SearchConsoleDictionary sharedDictionary) {
+      this.site = site;
+      this.siteType = siteType;
+      this.sharedDictionary = sharedDictionary;
+      this.keyCodes = new int[dimensionCount][INITIAL_CAPACITY];
+      this.clicks = new double[INITIAL_CAPACITY];
+      this.impressions = new double[INITIAL_CAPACITY];
+      this.ctr = new double[INITIAL_CAPACITY];
+      this.position = new double[INITIAL_CAPACITY];
+      clearRow();
+    }
+
+    public Builder setKey(int dimension, String value) {
+      if (dimension < keyCodes.length) {
+        keyCodes[dimension][size] = value == null ? MISSING_KEY : encode(value);
+      }
+      return this;
+    }
+
+    public Builder setClicks(double value) {
+      clicks[size] = value;
+      return this;
+    }
+
+    public Builder setImpressions(double value) {
+      impressions[size] = value;
+      return this;
+    }
+
+    public Builder setCtr(double value) {
+      ctr[size] = value;
+      return this;
+    }
+
+    public Builder setPosition(double value) {
+      position[size] = value;
+      return this;
+    }
+
+    /**
+     * Appends the current row and starts the next one.
+     */
+    public void endRow() {
+      size++;
+      if (size == clicks.length) {
+        int capacity = size * 2;
+        for (int i = 0; i < keyCodes.length; i++) {
+          keyCodes[i] = Arrays.copyOf(keyCodes[i], capacity);
+        }
+        clicks = Arrays.copyOf(clicks, capacity);
+        impressions = Arrays.copyOf(impressions, capacity);
+        ctr = Arrays.copyOf(ctr, capacity);
+        position = Arrays.copyOf(position, capacity);
+      }
+      clearRow();
+    }
+
+    public SearchConsolePage build() {
+      return new SearchConsolePage(this);
+    }
+
+    private int encode(String value) {
+      Integer code = codes.get(value);
+      if (code == null) {
+        String interned = sharedDictionary == null ? value : sharedDictionary.intern(value);
+        code = dictionary.size();
+        codes.put(interned, code);
+        dictionary.add(interned);
+      }
+      return code;
+    }
+
+    private void clearRow() {
+      for (int[] column : keyCodes) {
+        column[size] = MISSING_KEY;
+      }
+      clicks[size] = Double.NaN;
+      impressions[size] = Double.NaN;
+      ctr[size] = Double.NaN;
+      position[size] = Double.NaN;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.client.http.HttpResponse;
+import com.google.api.services.webmasters.Webmasters;
+import com.google.api.services.webmasters.Webmasters.Searchanalytics.Query;
+import com.google.api.services.webmasters.model.ApiDataRow;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryRequest;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Fetches single page of search analytics rows of a site through {@link SearchConsoleQueryExecutor}. The
+ * response is either parsed by the client library into {@link ApiDataRow} and copied into
+ * {@link SearchConsolePage}, or, with streaming decoding, its body is decoded straight into
+ * {@link SearchConsolePage} by {@link SearchConsoleResponseDecoder}. Dimension values of all pages are looked
+ * up in the dictionary of the fetcher, when there is one, and its hits and misses are recorded after every page.
+ * <p>
+ * Pages of final data are served from the {@link SearchConsoleResponseCache} of the fetcher, when there is one,
+ * and fetched pages are added to it. Failures of the cache are logged and the page is fetched from the API.
+ * Pages and rows read from the API and from the cache are recorded to the metrics of the query executor.
+ */
+public class SearchConsolePageFetcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SearchConsolePageFetcher.class);
+
+  private final Webmasters service;
+  private final SearchConsoleQueryExecutor queryExecutor;
+  private final boolean streaming;
+  @Nullable
+  private final SearchConsoleDictionary dictionary;
+  @Nullable
+  private final SearchConsoleResponseCache cache;
+
+  public SearchConsolePageFetcher(Webmasters service, SearchConsoleQueryExecutor queryExecutor, boolean streaming) {
+    this(service, queryExecutor, streaming, null, null);
+  }
+
+  public SearchConsolePageFetcher(Webmasters service, SearchConsoleQueryExecutor queryExecutor, boolean streaming,
+                                  @Nullable SearchConsoleDictionary dictionary,
+                                  @Nullable SearchConsoleResponseCache cache) {
+    this.service = service;
+    this.queryExecutor = queryExecutor;
+    this.streaming = streaming;
+    this.dictionary = dictionary;
+    this.cache = cache;
+  }
+
+  /**
+   * @param site     site url
+   * @param siteType type of the site
+   * @param request  {@link SearchAnalyticsQueryRequest} of the page
+   * @return {@link SearchConsolePage} rows of the page, empty when there are none
+   * @throws IOException when query fails
+   */
+  public SearchConsolePage fetch(String site, String siteType, SearchAnalyticsQueryRequest request)
+    throws IOException {
+    SearchConsolePage page = fetchPage(site, siteType, request);
+    if (dictionary != null) {
+      dictionary.record(queryExecutor.getMetrics());
+    }
+    return page;
+  }
+
+  private SearchConsolePage fetchPage(String site, String siteType, SearchAnalyticsQueryRequest request)
+    throws IOException {
+    if (cache == null || !cache.isCacheable(request)) {
+      return fetchFromApi(site, siteType, request);
+    }
+    try {
+      SearchConsolePage cached = cache.get(site, request, newPage(site, siteType, request));
+      if (cached != null) {
+        queryExecutor.getMetrics().count(SearchConsoleFetchMetrics.CACHED_PAGES, 1);
+        return cached;
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to read cached page of site: {} - {}", site, e.getMessage());
+    }
+    SearchConsolePage page = fetchFromApi(site, siteType, request);
+    try {
+      cache.put(site, request, page);
+    } catch (IOException e) {
+      LOG.warn("Failed to cache page of site: {} - {}", site, e.getMessage());
+    }
+    return page;
+  }
+
+  private SearchConsolePage fetchFromApi(String site, String siteType, SearchAnalyticsQueryRequest request)
+    throws IOException {
+    SearchConsolePage page = queryApi(site, siteType, request);
+    if (!page.isEmpty()) {
+      queryExecutor.getMetrics().count(SearchConsoleFetchMetrics.PAGES, 1);
+      queryExecutor.getMetrics().count(SearchConsoleFetchMetrics.ROWS, page.getSize());
+    }
+    return page;
+  }
+
+  private SearchConsolePage queryApi(String site, String siteType, SearchAnalyticsQueryRequest request)
+    throws IOException {
+    Query query = service.searchanalytics().query(site, request);
+    if (streaming) {
+      return queryExecutor.execute(site, () -> decode(query.executeUnparsed(), newPage(site, siteType, request)));
+    }
+    SearchAnalyticsQueryResponse response = queryExecutor.execute(site, query);
+    SearchConsolePage.Builder page = newPage(site, siteType, request);
+    if (response != null && response.getRows() != null) {
+      for (ApiDataRow row : response.getRows()) {
+        SearchConsoleRow.append(page, row);
+      }
+    }
+    return page.build();
+  }
+
+  private SearchConsolePage.Builder newPage(String site, String siteType, SearchAnalyticsQueryRequest request) {
+    int dimensionCount = request.getDimensions() == null ? 0 : request.getDimensions().size();
+    return SearchConsolePage.builder(site, siteType, dimensionCount, dictionary);
+  }
+
+  private static SearchConsolePage decode(HttpResponse response, SearchConsolePage.Builder page)
+    throws IOException {
+    try {
+      return SearchConsoleResponseDecoder.decode(response.getContent(), page);
+    } finally {
+      response.disconnect();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy iterator over non empty {@link SearchConsolePage} of a list of sites. Only a single page of rows (up to
+ * {@link SearchConsoleConstants#SEARCH_CONSOLE_MAX_ROW_LIMIT}) is held in memory at a time, the next page
+ * is requested from the API once the current one is consumed.
+ */
+public class SearchConsolePageIterator implements Iterator<SearchConsolePage> {
+
+  private final Iterator<SearchConsoleSitePages> sites;
+
+  private SearchConsoleSitePages site;
+  private SearchConsolePage page;
+
+  public SearchConsolePageIterator(List<SearchConsoleSitePages> sites) {
+    this.sites = sites.iterator();
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (page == null) {
+      if (site != null && site.hasMore()) {
+        SearchConsolePage next = site.next();
+        page = next.isEmpty() ? null : next;
+      } else if (sites.hasNext()) {
+        site = sites.next();
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public SearchConsolePage next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    SearchConsolePage next = page;
+    page = null;
+    return next;
+  }
+}
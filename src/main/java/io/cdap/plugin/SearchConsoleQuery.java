@@ -17,23 +17,105 @@ package io.cdap.plugin;
 
 import com.google.gson.GsonBuilder;
 import io.cdap.cdap.api.common.Bytes;
+import java.util.Collections;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
- * Class for storing list of sites to be utilized by split
+ * Class for storing list of sites and the date window to be utilized by split. A query of a single site can be
+ * limited to a range of rows, starting at a page boundary, or to rows matching dimension filters of its own.
  */
 public class SearchConsoleQuery {
 
   private List<String> sites;
+  private String startDate;
+  private String endDate;
+  @Nullable
+  private Long estimatedCost;
+  @Nullable
+  private Integer startRow;
+  @Nullable
+  private Integer endRow;
+  @Nullable
+  private List<DimensionFilter> filters;
 
-  public SearchConsoleQuery(List<String> sites) {
+  public SearchConsoleQuery(List<String> sites, DateRange dateRange) {
+    this(sites, dateRange, null);
+  }
+
+  public SearchConsoleQuery(List<String> sites, DateRange dateRange, @Nullable Long estimatedCost) {
+    this(sites, dateRange, estimatedCost, null, null);
+  }
+
+  public SearchConsoleQuery(List<String> sites, DateRange dateRange, @Nullable Long estimatedCost,
+                            @Nullable Integer startRow, @Nullable Integer endRow) {
     this.sites = sites;
+    this.startDate = dateRange.getStartDate().toString();
+    this.endDate = dateRange.getEndDate().toString();
+    this.estimatedCost = estimatedCost;
+    this.startRow = startRow;
+    this.endRow = endRow;
+  }
+
+  public SearchConsoleQuery(String site, DateRange dateRange, @Nullable Long estimatedCost,
+                            List<DimensionFilter> filters) {
+    this(Collections.singletonList(site), dateRange, estimatedCost);
+    this.filters = filters.isEmpty() ? null : filters;
   }
 
   public List<String> getSites() {
     return sites;
   }
 
+  public String getStartDate() {
+    return startDate;
+  }
+
+  public String getEndDate() {
+    return endDate;
+  }
+
+  public DateRange getDateRange() {
+    return DateRange.parse(startDate, endDate);
+  }
+
+  /**
+   * @return cost of all sites estimated by the cost estimator, 0 when the query was not estimated. The cost is
+   * relative, such as impressions, and not a number of rows.
+   */
+  public long getEstimatedCost() {
+    return estimatedCost == null ? 0 : estimatedCost;
+  }
+
+  /**
+   * @return first row read, 0 when the query is not limited to a range of rows
+   */
+  public int getStartRow() {
+    return startRow == null ? 0 : startRow;
+  }
+
+  /**
+   * @return row after the last row read, null when rows are read until the last one
+   */
+  @Nullable
+  public Integer getEndRow() {
+    return endRow;
+  }
+
+  /**
+   * @return filters of the query, applied in addition to the filters of the source
+   */
+  public List<DimensionFilter> getFilters() {
+    return filters == null ? Collections.emptyList() : filters;
+  }
+
+  /**
+   * @return estimated cost when known, otherwise number of site days of the query
+   */
+  public long getCost() {
+    return estimatedCost == null ? (long) sites.size() * getDateRange().getDays() : estimatedCost;
+  }
+
   public byte[] toByteArray() {
     return new GsonBuilder().create().toJson(this).getBytes();
   }
@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.webmasters.Webmasters.Searchanalytics.Query;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Executes search analytics queries within the query quota of the credential and the site. Queries rejected
+ * by quota slow down the shared {@link SearchConsoleRateLimiter}. Queries failing with a retryable error
+ * (quota, server errors and socket timeouts) are sent again as allowed by the {@link SearchConsoleRetryPolicy},
+ * other errors are thrown right away.
+ * <p>
+ * Time waiting for quota, request latency, failed requests and retries are recorded to the
+ * {@link SearchConsoleFetchMetrics}.
+ */
+public class SearchConsoleQueryExecutor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SearchConsoleQueryExecutor.class);
+  private static final int TOO_MANY_REQUESTS = 429;
+  private static final int FORBIDDEN = 403;
+  private static final int SERVER_ERROR = 500;
+  private static final Set<String> RATE_LIMIT_REASONS = new HashSet<>(
+    Arrays.asList("rateLimitExceeded", "userRateLimitExceeded", "quotaExceeded"));
+  private static final double SECONDS_PER_MINUTE = 60;
+
+  private final SearchConsoleRateLimiter credentialLimiter;
+  private final double maxSiteQueriesPerSecond;
+  private final SearchConsoleRetryPolicy retryPolicy;
+  private final SearchConsoleFetchMetrics metrics;
+
+  public SearchConsoleQueryExecutor(SearchConsoleRateLimiter credentialLimiter, double maxSiteQueriesPerSecond,
+                                    SearchConsoleRetryPolicy retryPolicy) {
+    this(credentialLimiter, maxSiteQueriesPerSecond, retryPolicy, new SearchConsoleFetchMetrics());
+  }
+
+  public SearchConsoleQueryExecutor(SearchConsoleRateLimiter credentialLimiter, double maxSiteQueriesPerSecond,
+                                    SearchConsoleRetryPolicy retryPolicy, SearchConsoleFetchMetrics metrics) {
+    this.credentialLimiter = credentialLimiter;
+    this.maxSiteQueriesPerSecond = maxSiteQueriesPerSecond;
+    this.retryPolicy = retryPolicy;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Creates executor limited by query rates and retry budgets of {@link SearchConsoleSourceConfig}.
+   *
+   * @param config  {@link SearchConsoleSourceConfig}
+   * @param runId   identifier of the run, splits of the same run share the run retry budget
+   * @param metrics {@link SearchConsoleFetchMetrics} of the stage and run
+   * @return {@link SearchConsoleQueryExecutor}
+   */
+  public static SearchConsoleQueryExecutor of(SearchConsoleSourceConfig config, String runId,
+                                              SearchConsoleFetchMetrics metrics) {
+    return new SearchConsoleQueryExecutor(
+      SearchConsoleRateLimiter.forCredential(SearchConsoleUtils.getCredentialFingerprint(config),
+                                             config.getMaxQueriesPerMinute() / SECONDS_PER_MINUTE),
+      config.getMaxSiteQueriesPerMinute() / SECONDS_PER_MINUTE,
+      SearchConsoleRetryPolicy.of(config, runId), metrics);
+  }
+
+  /**
+   * Executes query of the site, waiting for quota before every attempt.
+   *
+   * @param site  site url the query is sent for
+   * @param query {@link Query}
+   * @return {@link SearchAnalyticsQueryResponse}
+   * @throws IOException when query fails with an error which is not retryable, or the retries are exhausted
+   */
+  public SearchAnalyticsQueryResponse execute(String site, Query query) throws IOException {
+    return execute(site, query::execute);
+  }
+
+  /**
+   * Executes attempt of a query of the site, waiting for quota before every attempt.
+   *
+   * @param site    site url the query is sent for
+   * @param attempt {@link QueryAttempt} sending the query and reading its response
+   * @param <T>     type of the result of the attempt
+   * @return result of the successful attempt
+   * @throws IOException when query fails with an error which is not retryable, or the retries are exhausted
+   */
+  public <T> T execute(String site, QueryAttempt<T> attempt) throws IOException {
+    SearchConsoleRateLimiter siteLimiter = SearchConsoleRateLimiter.forSite(site, maxSiteQueriesPerSecond);
+    int retry = 0;
+    while (true) {
+      long waitStart = System.nanoTime();
+      credentialLimiter.acquire();
+      siteLimiter.acquire();
+      long start = System.nanoTime();
+      metrics.time(SearchConsoleFetchMetrics.RATE_LIMITER_WAIT_TIME, start - waitStart);
+      metrics.count(SearchConsoleFetchMetrics.REQUESTS, 1);
+      SearchConsoleFetchMetrics bound = SearchConsoleFetchMetrics.bind(metrics);
+      try {
+        T result = attempt.execute();
+        metrics.timeRequest(System.nanoTime() - start);
+        credentialLimiter.onSuccess();
+        siteLimiter.onSuccess();
+        return result;
+      } catch (IOException e) {
+        metrics.timeRequest(System.nanoTime() - start);
+        countFailure(e);
+        if (!isRetryable(e)) {
+          throw e;
+        }
+        if (e instanceof GoogleJsonResponseException && isRateLimited((GoogleJsonResponseException) e)) {
+          credentialLimiter.onRateLimited();
+          siteLimiter.onRateLimited();
+        }
+        retry++;
+        metrics.count(SearchConsoleFetchMetrics.RETRIES, 1);
+        LOG.warn("Query of site {} failed, retry {}: {}", site, retry, e.getMessage());
+        if (!retryPolicy.awaitRetry(retry)) {
+          throw new SearchConsoleRetriesExhaustedException(
+            String.format("Query of site %s failed after %d retries.", site, retry - 1), e);
+        }
+      } finally {
+        SearchConsoleFetchMetrics.bind(bound);
+      }
+    }
+  }
+
+  /**
+   * @return {@link SearchConsoleRetryPolicy} with retry counts of this executor
+   */
+  public SearchConsoleRetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /**
+   * @return {@link SearchConsoleFetchMetrics} the executor records to
+   */
+  public SearchConsoleFetchMetrics getMetrics() {
+    return metrics;
+  }
+
+  private void countFailure(IOException e) {
+    if (e instanceof GoogleJsonResponseException && isRateLimited((GoogleJsonResponseException) e)) {
+      metrics.count(SearchConsoleFetchMetrics.RATE_LIMITED, 1);
+    } else if (e instanceof HttpResponseException && ((HttpResponseException) e).getStatusCode() >= SERVER_ERROR) {
+      metrics.count(SearchConsoleFetchMetrics.SERVER_ERRORS, 1);
+    } else if (e instanceof HttpResponseException
+      && ((HttpResponseException) e).getStatusCode() == TOO_MANY_REQUESTS) {
+      metrics.count(SearchConsoleFetchMetrics.RATE_LIMITED, 1);
+    } else if (e instanceof SocketTimeoutException) {
+      metrics.count(SearchConsoleFetchMetrics.TIMEOUTS, 1);
+    }
+  }
+
+  static boolean isRetryable(IOException e) {
+    if (e instanceof GoogleJsonResponseException && isRateLimited((GoogleJsonResponseException) e)) {
+      return true;
+    }
+    if (e instanceof HttpResponseException) {
+      int statusCode = ((HttpResponseException) e).getStatusCode();
+      return statusCode == TOO_MANY_REQUESTS || statusCode >= SERVER_ERROR;
+    }
+    return e instanceof SocketTimeoutException;
+  }
+
+  static boolean isRateLimited(GoogleJsonResponseException e) {
+    if (e.getStatusCode() == TOO_MANY_REQUESTS) {
+      return true;
+    }
+    GoogleJsonError details = e.getDetails();
+    if (e.getStatusCode() != FORBIDDEN || details == null || details.getErrors() == null) {
+      return false;
+    }
+    return details.getErrors().stream().anyMatch(error -> RATE_LIMIT_REASONS.contains(error.getReason()));
+  }
+
+  /**
+   * Single attempt of a query, which sends it and reads its response.
+   *
+   * @param <T> type of the result
+   */
+  @FunctionalInterface
+  public interface QueryAttempt<T> {
+    T execute() throws IOException;
+  }
+}
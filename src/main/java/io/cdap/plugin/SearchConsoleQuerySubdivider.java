@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.services.webmasters.Webmasters;
+import com.google.api.services.webmasters.model.ApiDataRow;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryRequest;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Divides queries of sites which reach the row ceiling of the API, as the API silently drops rows beyond it.
+ * A site is saturated over a date window when it has a row at the last row below the ceiling, which is checked
+ * with a single row request. Saturated windows are halved as long as the date dimension is read and the window
+ * has more than one day, then divided by values of the subdivision dimensions in order, every value read by a
+ * query filtered to it. Every part is checked again, so only saturated parts are divided further.
+ * <p>
+ * Parts still saturated after all subdivisions, or which could not be checked, are read as they are.
+ */
+public class SearchConsoleQuerySubdivider {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SearchConsoleQuerySubdivider.class);
+
+  private final Webmasters service;
+  private final SearchConsoleQueryExecutor queryExecutor;
+  private final SearchAnalyticsQueryRequest request;
+  private final List<String> subdivisionDimensions;
+  private final int saturationRows;
+  private final boolean byDate;
+
+  /**
+   * @param service               {@link Webmasters}
+   * @param queryExecutor         {@link SearchConsoleQueryExecutor}
+   * @param request               {@link SearchAnalyticsQueryRequest} with dimensions and filters to be read
+   * @param subdivisionDimensions dimensions queries are divided by after date, all of them read
+   * @param saturationRows        number of rows at which a query is saturated
+   */
+  public SearchConsoleQuerySubdivider(Webmasters service, SearchConsoleQueryExecutor queryExecutor,
+                                      SearchAnalyticsQueryRequest request, List<String> subdivisionDimensions,
+                                      int saturationRows) {
+    this.service = service;
+    this.queryExecutor = queryExecutor;
+    this.request = request;
+    this.subdivisionDimensions = subdivisionDimensions;
+    this.saturationRows = saturationRows;
+    // windows of a query are aggregated over all their days, unless rows are by date
+    this.byDate = request.getDimensions() != null
+      && request.getDimensions().contains(SearchConsoleConstants.DATE_DIMENSION);
+  }
+
+  /**
+   * Replaces saturated sites of the queries with queries of their parts. Queries without saturated sites are
+   * kept as they are, as are queries limited to a range of rows.
+   *
+   * @param queries {@link List<SearchConsoleQuery>}
+   * @return {@link List<SearchConsoleQuery>} queries covering the same rows
+   */
+  public List<SearchConsoleQuery> subdivide(List<SearchConsoleQuery> queries) {
+    List<SearchConsoleQuery> result = new ArrayList<>();
+    for (SearchConsoleQuery query : queries) {
+      if (query.getStartRow() > 0 || query.getEndRow() != null) {
+        result.add(query);
+        continue;
+      }
+      DateRange window = query.getDateRange();
+      List<String> sites = new ArrayList<>();
+      List<SearchConsoleQuery> parts = new ArrayList<>();
+      for (String site : query.getSites()) {
+        if (isSaturated(site, window, query.getFilters())) {
+          Double estimate = query.getEstimatedCost() == 0
+            ? null : (double) query.getEstimatedCost() / query.getSites().size();
+          divide(site, window, query.getFilters(), 0, estimate, parts);
+        } else {
+          sites.add(site);
+        }
+      }
+      if (parts.isEmpty()) {
+        result.add(query);
+        continue;
+      }
+      if (!sites.isEmpty()) {
+        Long estimate = query.getEstimatedCost() == 0
+          ? null : query.getEstimatedCost() * sites.size() / query.getSites().size();
+        result.add(new SearchConsoleQuery(sites, window, estimate));
+      }
+      result.addAll(parts);
+    }
+    return result;
+  }
+
+  /**
+   * Divides a saturated site, window and filters into parts, which are divided further while saturated.
+   */
+  private void divide(String site, DateRange window, List<DimensionFilter> filters, int dimension,
+                      @Nullable Double estimate, List<SearchConsoleQuery> parts) {
+    if (byDate && window.getDays() > 1) {
+      List<DateRange> halves = window.split((window.getDays() + 1) / 2);
+      for (DateRange half : halves) {
+        add(site, half, filters, dimension, share(estimate, halves.size()), parts);
+      }
+      return;
+    }
+    if (dimension < subdivisionDimensions.size()) {
+      String name = subdivisionDimensions.get(dimension);
+      Set<String> values = getValues(site, window, filters, name);
+      if (!values.isEmpty()) {
+        LOG.info("Dividing site: {} from {} to {} by {} values of {}", site, window.getStartDate(),
+                 window.getEndDate(), values.size(), name);
+        for (String value : values) {
+          List<DimensionFilter> valueFilters = new ArrayList<>(filters);
+          valueFilters.add(new DimensionFilter(name, "equals", value));
+          add(site, window, valueFilters, dimension + 1, share(estimate, values.size()), parts);
+        }
+        return;
+      }
+      divide(site, window, filters, dimension + 1, estimate, parts);
+      return;
+    }
+    LOG.warn("Rows of site: {} from {} to {} where {} reach the row ceiling of {} and may be incomplete", site,
+             window.getStartDate(), window.getEndDate(), filters, saturationRows);
+    parts.add(newQuery(site, window, filters, estimate));
+  }
+
+  private void add(String site, DateRange window, List<DimensionFilter> filters, int dimension,
+                   @Nullable Double estimate, List<SearchConsoleQuery> parts) {
+    if (isSaturated(site, window, filters)) {
+      divide(site, window, filters, dimension, estimate, parts);
+    } else {
+      parts.add(newQuery(site, window, filters, estimate));
+    }
+  }
+
+  /**
+   * @return whether the site has a row at the last row below the ceiling, false when it could not be checked
+   */
+  boolean isSaturated(String site, DateRange window, List<DimensionFilter> filters) {
+    SearchAnalyticsQueryRequest probe = newRequest(window, filters);
+    probe.setStartRow(saturationRows - 1);
+    probe.setRowLimit(1);
+    try {
+      SearchAnalyticsQueryResponse response = queryExecutor.execute(site, service.searchanalytics()
+        .query(site, probe));
+      return response.getRows() != null && !response.getRows().isEmpty();
+    } catch (IOException e) {
+      LOG.warn("Failed to check saturation of site: {} - {}", site, e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * @return distinct values of the dimension, empty when they could not be read
+   */
+  private Set<String> getValues(String site, DateRange window, List<DimensionFilter> filters, String dimension) {
+    SearchAnalyticsQueryRequest values = newRequest(window, filters);
+    values.setDimensions(Collections.singletonList(dimension));
+    values.setRowLimit(SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT);
+    Set<String> result = new LinkedHashSet<>();
+    try {
+      SearchAnalyticsQueryResponse response = queryExecutor.execute(site, service.searchanalytics()
+        .query(site, values));
+      if (response.getRows() != null) {
+        for (ApiDataRow row : response.getRows()) {
+          result.add(row.getKeys().get(0));
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to read values of {} of site: {} - {}", dimension, site, e.getMessage());
+    }
+    return result;
+  }
+
+  private SearchAnalyticsQueryRequest newRequest(DateRange window, List<DimensionFilter> filters) {
+    SearchAnalyticsQueryRequest query = request.clone();
+    query.setStartDate(window.getStartDate().toString());
+    query.setEndDate(window.getEndDate().toString());
+    query.setStartRow(null);
+    query.setDimensionFilterGroups(DimensionFilter.addFilterGroup(query.getDimensionFilterGroups(), filters));
+    return query;
+  }
+
+  private static SearchConsoleQuery newQuery(String site, DateRange window, List<DimensionFilter> filters,
+                                             @Nullable Double estimate) {
+    return new SearchConsoleQuery(site, window, estimate == null ? null : Math.max(Math.round(estimate), 1),
+                                  filters);
+  }
+
+  @Nullable
+  private static Double share(@Nullable Double estimate, int parts) {
+    return estimate == null ? null : estimate / parts;
+  }
+}
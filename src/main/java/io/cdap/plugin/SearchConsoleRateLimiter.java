@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting queries per second, which adapts its rate in AIMD fashion: the rate is halved when
+ * a query is rejected by quota and grows by about one query per second every second while queries succeed,
+ * up to the configured maximum.
+ * <p>
+ * Limiters are shared by all readers in a JVM, one per credential and one per site for every maximum rate, so
+ * pipelines with different rate settings do not change each other's limits. Limiters not acquired for a while
+ * are removed, looked for at most once a minute.
+ */
+public class SearchConsoleRateLimiter {
+
+  static final double MIN_RATE = 0.1;
+  private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(30);
+  private static final long EVICTION_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final AtomicLong LAST_EVICTION_NANOS = new AtomicLong(System.nanoTime());
+  private static final ConcurrentMap<String, SearchConsoleRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+  private final double maxRate;
+  private double rate;
+  private double tokens;
+  private long lastRefillNanos;
+  private long lastDecreaseNanos;
+  private volatile long lastUsedNanos;
+
+  SearchConsoleRateLimiter(double maxRate) {
+    this.maxRate = Math.max(maxRate, MIN_RATE);
+    this.rate = this.maxRate;
+    this.tokens = 1;
+    this.lastRefillNanos = System.nanoTime();
+    this.lastDecreaseNanos = lastRefillNanos - DECREASE_INTERVAL_NANOS;
+    this.lastUsedNanos = lastRefillNanos;
+  }
+
+  /**
+   * @param credentialFingerprint fingerprint of the credential queries are sent with
+   * @param maxRate               maximum queries per second
+   * @return limiter shared by all queries of the credential in this JVM
+   */
+  public static SearchConsoleRateLimiter forCredential(String credentialFingerprint, double maxRate) {
+    return of("credential:" + credentialFingerprint, maxRate);
+  }
+
+  /**
+   * @param site    site url
+   * @param maxRate maximum queries per second
+   * @return limiter shared by all queries of the site in this JVM
+   */
+  public static SearchConsoleRateLimiter forSite(String site, double maxRate) {
+    return of("site:" + site, maxRate);
+  }
+
+  private static SearchConsoleRateLimiter of(String key, double maxRate) {
+    long now = System.nanoTime();
+    long lastEviction = LAST_EVICTION_NANOS.get();
+    if (now - lastEviction >= EVICTION_INTERVAL_NANOS && LAST_EVICTION_NANOS.compareAndSet(lastEviction, now)) {
+      LIMITERS.values().removeIf(limiter -> now - limiter.lastUsedNanos > IDLE_NANOS);
+    }
+    SearchConsoleRateLimiter limiter = LIMITERS.computeIfAbsent(key + "|" + maxRate,
+                                                                k -> new SearchConsoleRateLimiter(maxRate));
+    limiter.lastUsedNanos = now;
+    return limiter;
+  }
+
+  /**
+   * Waits until the query may be sent.
+   *
+   * @throws InterruptedIOException when interrupted while waiting
+   */
+  public void acquire() throws InterruptedIOException {
+    lastUsedNanos = System.nanoTime();
+    long waitNanos = reserve();
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for Search Console query quota.");
+      }
+    }
+  }
+
+  /**
+   * Additive increase, called after a successful query.
+   */
+  public synchronized void onSuccess() {
+    rate = Math.min(maxRate, rate + 1 / rate);
+  }
+
+  /**
+   * Multiplicative decrease, called after a query was rejected by quota. Queries which were in flight at the
+   * time of the decrease are likely rejected as well, so the rate is decreased at most once per second.
+   */
+  public synchronized void onRateLimited() {
+    long now = System.nanoTime();
+    if (now - lastDecreaseNanos < DECREASE_INTERVAL_NANOS) {
+      return;
+    }
+    lastDecreaseNanos = now;
+    refill(now);
+    rate = Math.max(MIN_RATE, rate / 2);
+    tokens = Math.min(tokens, 0);
+  }
+
+  public synchronized double getRate() {
+    return rate;
+  }
+
+  /**
+   * Takes a token, possibly going into debt, and returns how long the caller has to wait for it.
+   */
+  private synchronized long reserve() {
+    long now = System.nanoTime();
+    refill(now);
+    tokens -= 1;
+    return tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+  }
+
+  private void refill(long now) {
+    // bucket holds at most one second worth of queries
+    tokens = Math.min(Math.max(rate, 1), tokens + (now - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+    lastRefillNanos = now;
+  }
+}
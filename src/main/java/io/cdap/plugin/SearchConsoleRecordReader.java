@@ -15,13 +15,8 @@
  */
 package io.cdap.plugin;
 
-import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
-import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.webmasters.Webmasters;
-import com.google.api.services.webmasters.Webmasters.Searchanalytics.Query;
-import com.google.api.services.webmasters.model.ApiDataRow;
 import com.google.api.services.webmasters.model.SearchAnalyticsQueryRequest;
-import com.google.api.services.webmasters.model.SearchAnalyticsQueryResponse;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
@@ -31,94 +26,110 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
- * RecordReader implementation, which reads {@link ApiDataRow} and http codes from search console
+ * RecordReader implementation, which reads {@link SearchConsoleRow} from search console
  * api.
  */
-public class SearchConsoleRecordReader extends RecordReader<NullWritable, ApiDataRow> {
+public class SearchConsoleRecordReader extends RecordReader<NullWritable, SearchConsoleRow> {
 
   private static final Logger LOG = LoggerFactory.getLogger(SearchConsoleRecordReader.class);
+  // progress is requested after every record, but only changes with pages
+  private static final int PROGRESS_INTERVAL = 1000;
 
-  private Iterator<ApiDataRow> recordIterator;
-  private ApiDataRow value;
+  private Iterator<SearchConsoleRow> recordIterator;
+  private SearchConsoleRow value;
   private SearchConsoleSourceConfig searchConsoleSourceConfig;
-  private SearchConsoleQuery queryConfig;
+  private List<SearchConsoleQuery> queries;
+  private ExecutorService prefetchExecutor;
+  private String runId;
+  private SearchConsoleFetchMetrics metrics;
+  private SearchConsoleQueryExecutor queryExecutor;
+  private SearchConsoleDictionary dictionary;
+  private SearchConsoleResponseCache responseCache;
+  private SearchConsoleHttpTransport transport;
+  private List<SearchConsoleSitePages> sites = Collections.emptyList();
+  private long records;
+  private float progress;
+  private boolean finished;
 
   @Override
   public void initialize(final InputSplit inputSplit, final TaskAttemptContext taskAttemptContext)
     throws IOException {
     Configuration conf = taskAttemptContext.getConfiguration();
-    queryConfig = ((SearchConsoleSplit) inputSplit).getQuery();
+    queries = ((SearchConsoleSplit) inputSplit).getQueries();
     this.searchConsoleSourceConfig = SearchConsoleUtils.extractPropertiesFromConfig(conf);
-    recordIterator = getQueryData().iterator();
+    this.runId = String.valueOf(taskAttemptContext.getJobID());
+    this.metrics = SearchConsoleFetchMetrics.of(conf);
+    this.responseCache = SearchConsoleResponseCache.of(searchConsoleSourceConfig, conf);
+    if (responseCache != null) {
+      try {
+        responseCache.evictIfDue();
+      } catch (IOException e) {
+        LOG.warn("Failed to evict cached responses - {}", e.getMessage());
+      }
+    }
+    recordIterator = getQueryData();
   }
 
-  List<ApiDataRow> getQueryData() throws IOException {
-    GoogleCredential googleCredential = SearchConsoleUtils.generateCredential(this.searchConsoleSourceConfig);
-    Webmasters service = SearchConsoleUtils.generateService(googleCredential);
+  /**
+   * Creates lazy iterator over rows of all queries in the split, pages are fetched on demand. The returned
+   * rows are a cursor moved from row to row.
+   *
+   * @return {@link Iterator<SearchConsoleRow>}
+   * @throws IOException when credentials cannot be generated
+   */
+  Iterator<SearchConsoleRow> getQueryData() throws IOException {
+    Webmasters service = SearchConsoleUtils.generateService(searchConsoleSourceConfig);
+    transport = SearchConsoleHttpTransport.of(searchConsoleSourceConfig);
     SearchAnalyticsQueryRequest searchAnalyticsQueryRequest = new SearchAnalyticsQueryRequest();
-    searchAnalyticsQueryRequest.setStartDate(searchConsoleSourceConfig.getStartDate());
-    searchAnalyticsQueryRequest.setEndDate(searchConsoleSourceConfig.getEndDate());
     searchAnalyticsQueryRequest.setDimensions(searchConsoleSourceConfig.getDimensions());
+    searchAnalyticsQueryRequest.setDimensionFilterGroups(
+      DimensionFilter.toFilterGroups(searchConsoleSourceConfig.getDimensionFilters()));
     searchAnalyticsQueryRequest.setRowLimit(SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT);
-    List<ApiDataRow> rows = new ArrayList<>();
-    for (String site : queryConfig.getSites()) {
-      LOG.info("Fetching: " + site);
-      String siteType = site.startsWith(SearchConsoleConstants.SEARCH_CONSOLE_DOMAIN_PREFIX)
-        ? SearchConsoleConstants.SITE_TYPE_DOMAIN : SearchConsoleConstants.SITE_TYPE_URL_PREFIX;
-      rows.addAll(executeQuerySite(service, searchAnalyticsQueryRequest, site, siteType));
+    int fetchConcurrency = searchConsoleSourceConfig.getFetchConcurrency();
+    int prefetchDepth = searchConsoleSourceConfig.getPrefetchDepth();
+    if (prefetchDepth > 0) {
+      prefetchExecutor = Executors.newFixedThreadPool(
+        fetchConcurrency * (prefetchDepth + 1), SearchConsoleUtils.createFetchThreadFactory("search-console-prefetch"));
     }
-    return rows;
-  }
-
-
-  private List<ApiDataRow> executeQuerySite(Webmasters service, SearchAnalyticsQueryRequest request,
-                                            String site, String siteType) {
-    List<ApiDataRow> rows = new ArrayList<>();
-    int i = 0;
-    boolean hasRecords;
-    do {
-      try {
-        request.setStartRow(i * SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT);
-        Query query = service.searchanalytics().query(site, request);
-        SearchAnalyticsQueryResponse response = query.execute();
-        i++;
-        hasRecords = Optional.ofNullable(response.getRows()).isPresent() && response.getRows().size() != 0;
-        if (hasRecords) {
-          rows.addAll(addSiteInfo(response.getRows(), site, siteType));
-        }
-      } catch (GoogleJsonResponseException ex) {
-        hasRecords = false;
-        LOG.error("Failed to fetch site: {} - {}", site, ex.getDetails().getMessage());
-      } catch (IOException ex) {
-        hasRecords = false;
-        LOG.error("Failed to fetch site: {} - {}", site, ex.getMessage());
-      }
-    } while (hasRecords); // Page through all result rows
-    return rows;
-  }
-
-  private List<ApiDataRow> addSiteInfo(List<ApiDataRow> rows, String site, String siteType) {
-    return rows.stream().peek(row -> {
-      row.set("site", site);
-      row.set("type", siteType);
-    }).collect(Collectors.toList());
+    queryExecutor = SearchConsoleQueryExecutor.of(searchConsoleSourceConfig, runId, metrics);
+    if (searchConsoleSourceConfig.isSubdivideSaturatedQueries()) {
+      queries = new SearchConsoleQuerySubdivider(
+        service, queryExecutor, searchAnalyticsQueryRequest, searchConsoleSourceConfig.getSubdivisionDimensions(),
+        searchConsoleSourceConfig.getSaturationRows()).subdivide(queries);
+    }
+    int dictionarySize = searchConsoleSourceConfig.getDictionarySize();
+    dictionary = dictionarySize > 0 ? new SearchConsoleDictionary(dictionarySize) : null;
+    SearchConsolePageFetcher fetcher = new SearchConsolePageFetcher(
+      service, queryExecutor,
+      SearchConsoleConstants.RESPONSE_PARSER_STREAMING.equals(searchConsoleSourceConfig.getResponseParser()),
+      dictionary, responseCache);
+    sites = SearchConsoleSitePages.of(fetcher, searchAnalyticsQueryRequest, queries, prefetchExecutor, prefetchDepth);
+    if (fetchConcurrency > 1) {
+      return new SearchConsoleRowIterator(new SearchConsoleConcurrentPageIterator(sites, fetchConcurrency));
+    }
+    return new SearchConsoleRowIterator(new SearchConsolePageIterator(sites));
   }
 
   @Override
   public boolean nextKeyValue() {
     if (!recordIterator.hasNext()) {
+      finished = true;
       return false;
     }
     value = recordIterator.next();
+    if (records++ % PROGRESS_INTERVAL == 0) {
+      progress = computeProgress();
+    }
     return true;
   }
 
@@ -128,16 +139,52 @@ public class SearchConsoleRecordReader extends RecordReader<NullWritable, ApiDat
   }
 
   @Override
-  public ApiDataRow getCurrentValue() {
+  public SearchConsoleRow getCurrentValue() {
     return value;
   }
 
   @Override
   public float getProgress() {
-    return 0.0f;
+    return finished ? 1.0f : progress;
+  }
+
+  /**
+   * @return fetched share of the estimated cost of all sites and date windows of the split
+   */
+  private float computeProgress() {
+    double total = 0;
+    double done = 0;
+    for (SearchConsoleSitePages site : sites) {
+      total += site.getCost();
+      done += site.getCost() * site.getProgress();
+    }
+    return total == 0 ? 0.0f : (float) (done / total);
   }
 
   @Override
-  public void close() {
+  public void close() throws IOException {
+    if (recordIterator instanceof Closeable) {
+      ((Closeable) recordIterator).close();
+    }
+    if (prefetchExecutor != null) {
+      prefetchExecutor.shutdownNow();
+    }
+    if (queryExecutor != null && queryExecutor.getRetryPolicy().getRetries() > 0) {
+      LOG.info("Split retried {} queries, waiting {} ms before retries",
+               queryExecutor.getRetryPolicy().getRetries(), queryExecutor.getRetryPolicy().getBackoffMillis());
+    }
+    if (responseCache != null) {
+      LOG.info("Split served {} pages from the response cache, {} pages were not cached",
+               responseCache.getHits(), responseCache.getMisses());
+    }
+    if (dictionary != null) {
+      LOG.info("Split dictionary holds {} values, {} hits, {} misses, hit rate {}",
+               dictionary.getSize(), dictionary.getHits(), dictionary.getMisses(),
+               String.format("%.3f", dictionary.getHitRate()));
+    }
+    if (transport != null) {
+      // the transport is shared by the splits of the executor, so are its statistics
+      LOG.info("Executor sent {} requests over {} connections", transport.getRequests(), transport.getConnections());
+    }
   }
 }
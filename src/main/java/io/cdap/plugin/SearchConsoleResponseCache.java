@@ -0,0 +1,282 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.api.services.webmasters.model.ApiDimensionFilter;
+import com.google.api.services.webmasters.model.ApiDimensionFilterGroup;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryRequest;
+import com.google.common.base.Strings;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Cache of search analytics pages in a directory of any Hadoop file system, such as the local file system or
+ * HDFS. Only pages of requests ending on or before the last final date are cached, as data of older dates does
+ * not change. Pages are keyed by the site and every property of the request that affects the returned rows,
+ * and are stored as compressed JSON in the format of the API response.
+ * <p>
+ * Files are written to a temporary file and renamed, so concurrent splits never read partial pages. Expired
+ * files and the oldest files over the size limit are removed by {@link #evict()}, which splits run through
+ * {@link #evictIfDue()}, so a directory is listed at most once every ten minutes by a JVM rather than by every
+ * split.
+ */
+public class SearchConsoleResponseCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SearchConsoleResponseCache.class);
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final String FILE_SUFFIX = ".json.gz";
+  private static final long EVICTION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  // last eviction of every cache directory by this JVM
+  private static final ConcurrentMap<String, Long> LAST_EVICTIONS = new ConcurrentHashMap<>();
+
+  private final Path directory;
+  private final Configuration configuration;
+  private final long maxBytes;
+  private final long maxAgeMillis;
+  private final LocalDate lastFinalDate;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param directory     path of the cache directory
+   * @param configuration {@link Configuration} of the file system
+   * @param maxBytes      maximum total size of the cached files
+   * @param maxAgeMillis  maximum age of a cached file
+   * @param lastFinalDate last date whose data is final
+   */
+  public SearchConsoleResponseCache(String directory, Configuration configuration, long maxBytes, long maxAgeMillis,
+                                    LocalDate lastFinalDate) {
+    this.directory = new Path(directory);
+    this.configuration = configuration;
+    this.maxBytes = maxBytes;
+    this.maxAgeMillis = maxAgeMillis;
+    this.lastFinalDate = lastFinalDate;
+  }
+
+  /**
+   * @param config        {@link SearchConsoleSourceConfig}
+   * @param configuration {@link Configuration} of the file system
+   * @return {@link SearchConsoleResponseCache} configured for the source, null when caching is disabled
+   */
+  @Nullable
+  public static SearchConsoleResponseCache of(SearchConsoleSourceConfig config, Configuration configuration) {
+    if (Strings.isNullOrEmpty(config.getResponseCachePath())) {
+      return null;
+    }
+    LocalDate today = LocalDate.now(ZoneId.of(SearchConsoleConstants.SEARCH_CONSOLE_TIME_ZONE));
+    return new SearchConsoleResponseCache(config.getResponseCachePath(), configuration,
+                                          config.getResponseCacheMaxSizeMb() * 1024L * 1024L,
+                                          TimeUnit.DAYS.toMillis(config.getResponseCacheMaxAgeDays()),
+                                          config.getLastFinalDate(today));
+  }
+
+  /**
+   * @param request {@link SearchAnalyticsQueryRequest} of a page
+   * @return whether all dates of the request are final, so its page can be cached
+   */
+  public boolean isCacheable(SearchAnalyticsQueryRequest request) {
+    return request.getEndDate() != null && !LocalDate.parse(request.getEndDate()).isAfter(lastFinalDate);
+  }
+
+  /**
+   * @param site    site url
+   * @param request {@link SearchAnalyticsQueryRequest} of the page
+   * @param page    {@link SearchConsolePage.Builder} the cached rows are appended to
+   * @return cached {@link SearchConsolePage}, null when the page is not cached, has expired or cannot be decoded
+   * @throws IOException when the cache cannot be accessed
+   */
+  public SearchConsolePage get(String site, SearchAnalyticsQueryRequest request, SearchConsolePage.Builder page)
+    throws IOException {
+    Path file = getPath(site, request);
+    FileSystem fileSystem = file.getFileSystem(configuration);
+    FileStatus status;
+    try {
+      status = fileSystem.getFileStatus(file);
+    } catch (FileNotFoundException e) {
+      misses.incrementAndGet();
+      return null;
+    }
+    if (System.currentTimeMillis() - status.getModificationTime() > maxAgeMillis) {
+      misses.incrementAndGet();
+      fileSystem.delete(file, false);
+      return null;
+    }
+    InputStream in = fileSystem.open(file);
+    SearchConsolePage cached;
+    try {
+      cached = SearchConsoleResponseDecoder.decode(new GZIPInputStream(in), page);
+    } catch (IOException e) {
+      in.close();
+      misses.incrementAndGet();
+      // the fetched page cannot be renamed onto a corrupt one, which would otherwise fail every read until expiry
+      LOG.warn("Removing cached page {} which cannot be decoded - {}", file, e.getMessage());
+      fileSystem.delete(file, false);
+      return null;
+    }
+    hits.incrementAndGet();
+    return cached;
+  }
+
+  /**
+   * @param site    site url
+   * @param request {@link SearchAnalyticsQueryRequest} of the page
+   * @param page    {@link SearchConsolePage} fetched for the request
+   * @throws IOException when the page cannot be written
+   */
+  public void put(String site, SearchAnalyticsQueryRequest request, SearchConsolePage page) throws IOException {
+    Path file = getPath(site, request);
+    FileSystem fileSystem = file.getFileSystem(configuration);
+    Path temporary = new Path(directory, "." + file.getName() + "." + UUID.randomUUID() + ".tmp");
+    try (OutputStream out = new GZIPOutputStream(fileSystem.create(temporary, true))) {
+      encode(page, out);
+    }
+    if (!fileSystem.rename(temporary, file)) {
+      // another split cached the same page first
+      fileSystem.delete(temporary, false);
+    }
+  }
+
+  /**
+   * Evicts files unless the cache directory was evicted by this JVM within the eviction interval.
+   *
+   * @return whether files were evicted
+   * @throws IOException when the cache directory cannot be listed
+   */
+  public boolean evictIfDue() throws IOException {
+    long now = System.currentTimeMillis();
+    String key = directory.toString();
+    Long last = LAST_EVICTIONS.get(key);
+    boolean due = last == null
+      ? LAST_EVICTIONS.putIfAbsent(key, now) == null
+      : now - last >= EVICTION_INTERVAL_MILLIS && LAST_EVICTIONS.replace(key, last, now);
+    if (due) {
+      evict();
+    }
+    return due;
+  }
+
+  /**
+   * Removes expired files, then the least recently written files until the cache fits its size limit.
+   *
+   * @throws IOException when the cache directory cannot be listed
+   */
+  public void evict() throws IOException {
+    FileSystem fileSystem = directory.getFileSystem(configuration);
+    if (!fileSystem.exists(directory)) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    List<FileStatus> files = new ArrayList<>();
+    long totalBytes = 0;
+    for (FileStatus status : fileSystem.listStatus(directory)) {
+      if (!status.getPath().getName().endsWith(FILE_SUFFIX)) {
+        continue;
+      }
+      if (now - status.getModificationTime() > maxAgeMillis) {
+        fileSystem.delete(status.getPath(), false);
+      } else {
+        files.add(status);
+        totalBytes += status.getLen();
+      }
+    }
+    files.sort(Comparator.comparingLong(FileStatus::getModificationTime));
+    for (int i = 0; i < files.size() && totalBytes > maxBytes; i++) {
+      fileSystem.delete(files.get(i).getPath(), false);
+      totalBytes -= files.get(i).getLen();
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  private Path getPath(String site, SearchAnalyticsQueryRequest request) {
+    List<String> key = new ArrayList<>(Arrays.asList(
+      site, request.getStartDate(), request.getEndDate(), String.valueOf(request.getDimensions()),
+      request.getSearchType(), request.getAggregationType(), String.valueOf(request.getRowLimit()),
+      String.valueOf(request.getStartRow()), String.valueOf(request.get("dataState"))));
+    if (request.getDimensionFilterGroups() != null) {
+      for (ApiDimensionFilterGroup group : request.getDimensionFilterGroups()) {
+        key.add(group.getGroupType());
+        if (group.getFilters() != null) {
+          for (ApiDimensionFilter filter : group.getFilters()) {
+            key.addAll(Arrays.asList(filter.getDimension(), filter.getOperator(), filter.getExpression()));
+          }
+        }
+      }
+    }
+    return new Path(directory, SearchConsoleUtils.sha256Hex(key) + FILE_SUFFIX);
+  }
+
+  private static void encode(SearchConsolePage page, OutputStream out) throws IOException {
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("rows");
+      for (int row = 0; row < page.getSize(); row++) {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("keys");
+        for (int dimension = 0; dimension < page.getDimensionCount(); dimension++) {
+          generator.writeString(page.getKey(row, dimension));
+        }
+        generator.writeEndArray();
+        writeMetric(generator, "clicks", page.getClicks(row));
+        writeMetric(generator, "impressions", page.getImpressions(row));
+        writeMetric(generator, "ctr", page.getCtr(row));
+        writeMetric(generator, "position", page.getPosition(row));
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+  }
+
+  private static void writeMetric(JsonGenerator generator, String name, double value) throws IOException {
+    if (!Double.isNaN(value)) {
+      generator.writeNumberField(name, value);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes body of a search analytics query response with a streaming parser straight into the columns of a
+ * {@link SearchConsolePage}, without building the maps of the client library model.
+ */
+public final class SearchConsoleResponseDecoder {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private SearchConsoleResponseDecoder() {
+  }
+
+  /**
+   * @param content response body, closed when decoded
+   * @param page    {@link SearchConsolePage.Builder} of the page the rows are appended to
+   * @return {@link SearchConsolePage} rows of the response, empty when it has none
+   * @throws IOException when the body cannot be read or is not a search analytics response
+   */
+  public static SearchConsolePage decode(InputStream content, SearchConsolePage.Builder page) throws IOException {
+    if (content == null) {
+      return page.build();
+    }
+    try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Expected search analytics response object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("rows".equals(field) && value == JsonToken.START_ARRAY) {
+          decodeRows(parser, page);
+        } else {
+          parser.skipChildren();
+        }
+      }
+      return page.build();
+    }
+  }
+
+  private static void decodeRows(JsonParser parser, SearchConsolePage.Builder page) throws IOException {
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        switch (field) {
+          case "keys":
+            if (value == JsonToken.START_ARRAY) {
+              decodeKeys(parser, page);
+            } else {
+              parser.skipChildren();
+            }
+            break;
+          case "clicks":
+            page.setClicks(parser.getValueAsDouble(Double.NaN));
+            break;
+          case "impressions":
+            page.setImpressions(parser.getValueAsDouble(Double.NaN));
+            break;
+          case "ctr":
+            page.setCtr(parser.getValueAsDouble(Double.NaN));
+            break;
+          case "position":
+            page.setPosition(parser.getValueAsDouble(Double.NaN));
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+      page.endRow();
+    }
+  }
+
+  private static void decodeKeys(JsonParser parser, SearchConsolePage.Builder page) throws IOException {
+    int dimension = 0;
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      page.setKey(dimension++, parser.getValueAsString());
+    }
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a query keeps failing with retryable errors and no retries are left. Like other query errors it
+ * fails the split, so that the missing pages are not silently dropped.
+ */
+public class SearchConsoleRetriesExhaustedException extends IOException {
+
+  public SearchConsoleRetriesExhaustedException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a failed query may be retried and waits before the retry. The number of retries is bounded
+ * per query, per split and per run, the run budget being shared by all splits of the run in the same JVM.
+ * Executors do not learn when a run finishes, so budgets of runs which started no split for a while are removed,
+ * looked for at most once a minute.
+ * Waits grow exponentially with the attempt and are jittered, so that readers failing together do not
+ * retry together.
+ */
+public class SearchConsoleRetryPolicy {
+
+  static final long BASE_BACKOFF_MILLIS = 1000;
+  static final long MAX_BACKOFF_MILLIS = 64000;
+  private static final long RUN_BUDGET_IDLE_NANOS = TimeUnit.HOURS.toNanos(6);
+  private static final long EVICTION_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final AtomicLong LAST_EVICTION_NANOS = new AtomicLong(System.nanoTime());
+  private static final ConcurrentMap<String, RunBudget> RUN_BUDGETS = new ConcurrentHashMap<>();
+
+  private final int maxRetries;
+  private final AtomicInteger splitBudget;
+  private final AtomicInteger runBudget;
+  private final long baseBackoffMillis;
+  private final long maxBackoffMillis;
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong backoffMillis = new AtomicLong();
+
+  SearchConsoleRetryPolicy(int maxRetries, int splitBudget, AtomicInteger runBudget, long baseBackoffMillis,
+                           long maxBackoffMillis) {
+    this.maxRetries = maxRetries;
+    this.splitBudget = new AtomicInteger(splitBudget);
+    this.runBudget = runBudget;
+    this.baseBackoffMillis = baseBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+  }
+
+  /**
+   * Creates policy of a single split.
+   *
+   * @param config {@link SearchConsoleSourceConfig}
+   * @param runId  identifier of the run, splits of the same run share the run budget
+   * @return {@link SearchConsoleRetryPolicy}
+   */
+  public static SearchConsoleRetryPolicy of(SearchConsoleSourceConfig config, String runId) {
+    long now = System.nanoTime();
+    long lastEviction = LAST_EVICTION_NANOS.get();
+    if (now - lastEviction >= EVICTION_INTERVAL_NANOS && LAST_EVICTION_NANOS.compareAndSet(lastEviction, now)) {
+      RUN_BUDGETS.values().removeIf(budget -> now - budget.lastUsedNanos > RUN_BUDGET_IDLE_NANOS);
+    }
+    RunBudget runBudget = RUN_BUDGETS.computeIfAbsent(runId, id -> new RunBudget(config.getRunRetryBudget()));
+    runBudget.lastUsedNanos = now;
+    return new SearchConsoleRetryPolicy(config.getMaxRetries(), config.getSplitRetryBudget(), runBudget.retries,
+                                        BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+  }
+
+  /**
+   * Takes a retry from the budgets and waits before it.
+   *
+   * @param retry number of the retry of the query, starting from 1
+   * @return false when the query must not be retried
+   * @throws InterruptedIOException when interrupted while waiting
+   */
+  public boolean awaitRetry(int retry) throws InterruptedIOException {
+    if (retry > maxRetries || !take(splitBudget)) {
+      return false;
+    }
+    if (!take(runBudget)) {
+      // no retry is made, so the split keeps its retry
+      splitBudget.incrementAndGet();
+      return false;
+    }
+    retries.incrementAndGet();
+    long waitMillis = getBackoffMillis(retry);
+    backoffMillis.addAndGet(waitMillis);
+    try {
+      TimeUnit.MILLISECONDS.sleep(waitMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to retry Search Console query.");
+    }
+    return true;
+  }
+
+  /**
+   * @return number of retries done in this split
+   */
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /**
+   * @return milliseconds spent waiting before retries in this split
+   */
+  public long getBackoffMillis() {
+    return backoffMillis.get();
+  }
+
+  /**
+   * Upper half of the exponential backoff is random, so waits are never shorter than half of the backoff.
+   */
+  long getBackoffMillis(int retry) {
+    long backoff = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(retry - 1, 30));
+    long half = backoff / 2;
+    return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+  }
+
+  private static boolean take(AtomicInteger budget) {
+    return budget.getAndUpdate(left -> left > 0 ? left - 1 : 0) > 0;
+  }
+
+  /**
+   * Retries left to the splits of a run.
+   */
+  private static final class RunBudget {
+    private final AtomicInteger retries;
+    private volatile long lastUsedNanos;
+
+    private RunBudget(int retries) {
+      this.retries = new AtomicInteger(retries);
+    }
+  }
+}
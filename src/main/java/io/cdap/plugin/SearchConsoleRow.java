@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.services.webmasters.model.ApiDataRow;
+
+import java.util.List;
+
+/**
+ * Cursor over a row of a {@link SearchConsolePage}: dimension values in order of the requested dimensions and
+ * primitive metrics. Metrics missing in the response are {@link Double#NaN}.
+ * <p>
+ * The cursor is a flyweight, readers move the same instance from row to row, so it must not be kept after
+ * the next row is read.
+ */
+public final class SearchConsoleRow {
+
+  private SearchConsolePage page;
+  private int index;
+
+  public SearchConsoleRow(SearchConsolePage page, int index) {
+    moveTo(page, index);
+  }
+
+  /**
+   * Copies row parsed by the client library into a single row page.
+   *
+   * @param row      {@link ApiDataRow} parsed by the client library
+   * @param site     site url the row belongs to
+   * @param siteType type of the site
+   * @return {@link SearchConsoleRow}
+   */
+  public static SearchConsoleRow of(ApiDataRow row, String site, String siteType) {
+    List<String> keys = row.getKeys();
+    SearchConsolePage.Builder builder = SearchConsolePage.builder(site, siteType, keys == null ? 0 : keys.size());
+    append(builder, row);
+    return new SearchConsoleRow(builder.build(), 0);
+  }
+
+  /**
+   * Appends row parsed by the client library to the page.
+   *
+   * @param builder {@link SearchConsolePage.Builder}
+   * @param row     {@link ApiDataRow} parsed by the client library
+   */
+  static void append(SearchConsolePage.Builder builder, ApiDataRow row) {
+    List<String> keys = row.getKeys();
+    if (keys != null) {
+      for (int i = 0; i < keys.size(); i++) {
+        builder.setKey(i, keys.get(i));
+      }
+    }
+    builder.setClicks(valueOf(row.getClicks()))
+      .setImpressions(valueOf(row.getImpressions()))
+      .setCtr(valueOf(row.getCtr()))
+      .setPosition(valueOf(row.getPosition()))
+      .endRow();
+  }
+
+  void moveTo(SearchConsolePage page, int index) {
+    this.page = page;
+    this.index = index;
+  }
+
+  SearchConsolePage getPage() {
+    return page;
+  }
+
+  public String getSite() {
+    return page.getSite();
+  }
+
+  public String getSiteType() {
+    return page.getSiteType();
+  }
+
+  public int getKeyCount() {
+    return page.getDimensionCount();
+  }
+
+  public String getKey(int dimension) {
+    return page.getKey(index, dimension);
+  }
+
+  /**
+   * @return code of the dimension value, unique within the page of the row
+   */
+  public int getKeyCode(int dimension) {
+    return page.getKeyCode(index, dimension);
+  }
+
+  public double getClicks() {
+    return page.getClicks(index);
+  }
+
+  public double getImpressions() {
+    return page.getImpressions(index);
+  }
+
+  public double getCtr() {
+    return page.getCtr(index);
+  }
+
+  public double getPosition() {
+    return page.getPosition(index);
+  }
+
+  private static double valueOf(Double metric) {
+    return metric == null ? Double.NaN : metric;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over rows of pages, which returns the same {@link SearchConsoleRow} cursor moved to the next row.
+ */
+public class SearchConsoleRowIterator implements Iterator<SearchConsoleRow>, Closeable {
+
+  private final Iterator<SearchConsolePage> pages;
+  private final SearchConsoleRow cursor = new SearchConsoleRow(null, -1);
+
+  private SearchConsolePage page;
+  private int next;
+
+  public SearchConsoleRowIterator(Iterator<SearchConsolePage> pages) {
+    this.pages = pages;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (page == null || next >= page.getSize()) {
+      if (!pages.hasNext()) {
+        return false;
+      }
+      page = pages.next();
+      next = 0;
+    }
+    return true;
+  }
+
+  @Override
+  public SearchConsoleRow next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    cursor.moveTo(page, next++);
+    return cursor;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (pages instanceof Closeable) {
+      ((Closeable) pages).close();
+    }
+  }
+}
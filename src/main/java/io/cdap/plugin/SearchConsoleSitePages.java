@@ -0,0 +1,260 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryRequest;
+import com.google.common.base.Throwables;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+/**
+ * Pages through {@link SearchConsolePage} of a single site over the date window of a query. Every instance
+ * has its own copy of the request, so different sites can be paged from different threads.
+ * <p>
+ * When prefetch depth is set, the following pages of the site are requested in the background while the
+ * current page is being consumed. Prefetching stops on the first empty page.
+ * <p>
+ * A page with fewer rows than the row limit of the request is the last one of the site, so no further pages are
+ * requested after it and pages already requested ahead are cancelled.
+ * <p>
+ * Requests failing with errors which are not retried fail the split, so that no data of the site is silently
+ * missing.
+ * <p>
+ * Queries limited to a range of rows start paging at the first page of the range and finish at its end. Filters
+ * of a query are added to the request as a filter group of their own, as all groups have to match.
+ * <p>
+ * Progress of a range of rows is the share of its rows fetched so far. The number of rows of other queries is
+ * not known, as their estimated cost is not a number of rows, so their progress grows with every fetched page.
+ * As long as the site has more pages, at least one more page is expected, so progress reaches 1 only when the
+ * site is finished.
+ */
+public class SearchConsoleSitePages {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SearchConsoleSitePages.class);
+
+  private final SearchConsolePageFetcher fetcher;
+  private final SearchAnalyticsQueryRequest request;
+  private final String site;
+  private final String siteType;
+  @Nullable
+  private final ExecutorService prefetchExecutor;
+  private final int prefetchDepth;
+  private final double cost;
+  // rows of a range of rows, null when the number of rows is not known
+  @Nullable
+  private final Integer rangeRows;
+  // pages at and after the end page belong to the following range of rows
+  private final int endPage;
+  private final List<DimensionFilter> filters;
+  @Nullable
+  private final Integer rowLimit;
+  private final Deque<Future<SearchConsolePage>> prefetched = new ArrayDeque<>();
+  private int pageIndex;
+  private boolean started;
+  private boolean lastPageFetched;
+  // read by the reader thread for progress while pages are fetched by another one
+  private volatile boolean hasMore = true;
+  private volatile long rows;
+  private volatile int pages;
+
+  public SearchConsoleSitePages(SearchConsolePageFetcher fetcher, SearchAnalyticsQueryRequest request,
+                                SearchConsoleQuery query, String site, @Nullable ExecutorService prefetchExecutor,
+                                int prefetchDepth) {
+    this.fetcher = fetcher;
+    this.request = request.clone();
+    this.request.setStartDate(query.getStartDate());
+    this.request.setEndDate(query.getEndDate());
+    this.filters = query.getFilters();
+    this.request.setDimensionFilterGroups(
+      DimensionFilter.addFilterGroup(this.request.getDimensionFilterGroups(), filters));
+    this.rowLimit = this.request.getRowLimit();
+    this.site = site;
+    this.siteType = site.startsWith(SearchConsoleConstants.SEARCH_CONSOLE_DOMAIN_PREFIX)
+      ? SearchConsoleConstants.SITE_TYPE_DOMAIN : SearchConsoleConstants.SITE_TYPE_URL_PREFIX;
+    this.prefetchExecutor = prefetchExecutor;
+    this.prefetchDepth = prefetchExecutor == null ? 0 : prefetchDepth;
+    this.cost = (double) query.getCost() / query.getSites().size();
+    this.rangeRows = query.getEndRow() == null ? null : query.getEndRow() - query.getStartRow();
+    this.pageIndex = query.getStartRow() / SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT;
+    this.endPage = query.getEndRow() == null
+      ? Integer.MAX_VALUE : query.getEndRow() / SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT;
+  }
+
+  /**
+   * Creates pages of every site of every query.
+   *
+   * @param fetcher          {@link SearchConsolePageFetcher}
+   * @param request          {@link SearchAnalyticsQueryRequest} request with dimensions and row limit set
+   * @param queries          {@link List<SearchConsoleQuery>}
+   * @param prefetchExecutor {@link ExecutorService} executing prefetch requests, null disables prefetching
+   * @param prefetchDepth    number of pages requested ahead of the current page
+   * @return {@link List<SearchConsoleSitePages>} in order of queries and their sites
+   */
+  public static List<SearchConsoleSitePages> of(SearchConsolePageFetcher fetcher, SearchAnalyticsQueryRequest request,
+                                                List<SearchConsoleQuery> queries,
+                                                @Nullable ExecutorService prefetchExecutor, int prefetchDepth) {
+    List<SearchConsoleSitePages> sitePages = new ArrayList<>();
+    for (SearchConsoleQuery query : queries) {
+      for (String site : query.getSites()) {
+        sitePages.add(new SearchConsoleSitePages(fetcher, request, query, site, prefetchExecutor, prefetchDepth));
+      }
+    }
+    return sitePages;
+  }
+
+  /**
+   * @return false once an empty page was returned or a request failed
+   */
+  public boolean hasMore() {
+    return hasMore;
+  }
+
+  /**
+   * @return share of the estimated cost of the query falling on this site
+   */
+  public double getCost() {
+    return cost;
+  }
+
+  /**
+   * @return fraction of the site fetched, between 0 and 1
+   */
+  public double getProgress() {
+    if (!hasMore) {
+      return 1;
+    }
+    if (rangeRows != null) {
+      long fetched = rows;
+      return (double) fetched / Math.max(rangeRows, fetched + SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT);
+    }
+    int fetchedPages = pages;
+    return (double) fetchedPages / (fetchedPages + 1);
+  }
+
+  /**
+   * Fetches next page of the site. Marks the site as finished when an empty page is returned or
+   * the request fails.
+   *
+   * @return {@link SearchConsolePage} rows of the page, empty when site has no more rows
+   * @throws UncheckedIOException when the page could not be fetched
+   */
+  public SearchConsolePage next() {
+    if (!started) {
+      started = true;
+      if (!filters.isEmpty()) {
+        LOG.info("Fetching: {} from {} to {} where {}", site, request.getStartDate(), request.getEndDate(), filters);
+      } else if (pageIndex > 0 || endPage < Integer.MAX_VALUE) {
+        LOG.info("Fetching: {} from {} to {}, pages {} to {}", site, request.getStartDate(), request.getEndDate(),
+                 pageIndex, endPage == Integer.MAX_VALUE ? "last" : endPage - 1);
+      } else {
+        LOG.info("Fetching: {} from {} to {}", site, request.getStartDate(), request.getEndDate());
+      }
+    }
+    try {
+      SearchConsolePage page;
+      if (lastPageFetched) {
+        page = emptyPage();
+      } else if (prefetchDepth > 0) {
+        page = nextPrefetched();
+      } else {
+        page = pageIndex < endPage ? fetchPage(pageIndex++) : emptyPage();
+      }
+      hasMore = !page.isEmpty();
+      if (hasMore) {
+        rows += page.getSize();
+        pages++;
+        if (rowLimit != null && page.getSize() < rowLimit) {
+          lastPageFetched = true;
+          cancelPrefetched();
+        }
+        return page;
+      }
+      LOG.info("Fetched {} rows in {} pages of site: {} from {} to {}", rows, pages, site, request.getStartDate(),
+               request.getEndDate());
+    } catch (IOException ex) {
+      hasMore = false;
+      logFailure(ex);
+      throw new UncheckedIOException(ex);
+    } finally {
+      if (!hasMore) {
+        cancelPrefetched();
+      }
+    }
+    return emptyPage();
+  }
+
+  private SearchConsolePage emptyPage() {
+    return SearchConsolePage.builder(site, siteType, 0).build();
+  }
+
+  private void logFailure(IOException e) {
+    if (e instanceof GoogleJsonResponseException && ((GoogleJsonResponseException) e).getDetails() != null) {
+      LOG.error("Failed to fetch site: {} - {}", site, ((GoogleJsonResponseException) e).getDetails().getMessage());
+    } else {
+      LOG.error("Failed to fetch site: {} - {}", site, e.getMessage());
+    }
+  }
+
+  /**
+   * Keeps prefetch depth pages in flight after the returned one.
+   */
+  private SearchConsolePage nextPrefetched() throws IOException {
+    while (prefetched.size() <= prefetchDepth && pageIndex < endPage) {
+      int page = pageIndex++;
+      prefetched.add(prefetchExecutor.submit(() -> fetchPage(page)));
+    }
+    if (prefetched.isEmpty()) {
+      return emptyPage();
+    }
+    try {
+      return prefetched.poll().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for page of site " + site);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private void cancelPrefetched() {
+    for (Future<SearchConsolePage> future : prefetched) {
+      future.cancel(true);
+    }
+    prefetched.clear();
+  }
+
+  private SearchConsolePage fetchPage(int page) throws IOException {
+    SearchAnalyticsQueryRequest pageRequest = request.clone();
+    pageRequest.setStartRow(page * SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT);
+    return fetcher.fetch(site, siteType, pageRequest);
+  }
+}
@@ -16,8 +16,6 @@
 
 package io.cdap.plugin;
 
-import com.google.api.services.webmasters.model.ApiDataRow;
-
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.annotation.Plugin;
@@ -29,28 +27,55 @@ import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.StageConfigurer;
+import io.cdap.cdap.etl.api.StageContext;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.plugin.common.LineageRecorder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * This class <code>SearchConsoleSource</code> is a plugin that would allow users
  * to read analytics data from Google Search Console API
  * <p>
- * This plugin fetches and transforms <code>ApiDataRows</code> to <code>StructuredRecords</code>.
+ * This plugin fetches and transforms <code>SearchConsoleRows</code> to <code>StructuredRecords</code>.
  */
 @Plugin(type = BatchSource.PLUGIN_TYPE)
 @Name(SearchConsoleSource.NAME)
 @Description("Reads from a FileSet that has its data formatted as text.")
-public class SearchConsoleSource extends BatchSource<String, ApiDataRow, StructuredRecord> {
+public class SearchConsoleSource extends BatchSource<String, SearchConsoleRow, StructuredRecord> {
 
   public static final String NAME = "SearchConsoleSource";
+  private static final Logger LOG = LoggerFactory.getLogger(SearchConsoleSource.class);
+  // number of records between emissions of the metrics
+  private static final int METRICS_INTERVAL = 10000;
   private final SearchConsoleSourceConfig config;
+  private SearchConsoleTransformPlan transformPlan;
+  private StageMetrics metrics;
+  private SearchConsoleFetchMetrics fetchMetrics;
+  private int records;
+  private long emittedHits;
+  private long emittedMisses;
+  private long conversionNanos;
+  private long lastEmitNanos;
+  private List<String> incrementalSites;
+  private LocalDate incrementalEndDate;
+  private String watermarkPath;
+  private Configuration watermarkConfiguration;
 
   public SearchConsoleSource(SearchConsoleSourceConfig config) {
     this.config = config;
@@ -61,69 +86,153 @@ public class SearchConsoleSource extends BatchSource<String, ApiDataRow, Structu
     StageConfigurer stageConfigurer = pipelineConfigurer.getStageConfigurer();
     FailureCollector collector = stageConfigurer.getFailureCollector();
     config.validate(collector);
+    if (!config.containsMacro(SearchConsoleSourceConfig.DIMENSIONS) && !config.containsMacro("schema")) {
+      try {
+        getProjectedDimensions(config.getParsedSchema());
+      } catch (IOException e) {
+        collector.addFailure(String.format("Schema is not valid: %s", e.getMessage()), null)
+          .withConfigProperty("schema");
+      }
+    }
   }
 
   @Override
   public void prepareRun(BatchSourceContext context) throws IOException {
-    emitLineage(context, config.getParsedSchema());
-    context.setInput(Input.of(config.referenceName, new SearchConsoleInputFormatProvider(config)));
+    Schema schema = config.getParsedSchema();
+    emitLineage(context, schema);
+    Map<String, String> overrides = new HashMap<>();
+    overrides.put(SearchConsoleSourceConfig.DIMENSIONS,
+                  String.join(SearchConsoleConstants.DIMENSIONS_DELIMITER, getProjectedDimensions(schema)));
+    if (config.isIncremental()) {
+      // sites and end date are chosen once and passed to the job, so the watermarks committed by the run match
+      // what was read
+      incrementalSites = SearchConsoleUtils.getSitesUrls(config);
+      incrementalEndDate = config.getIncrementalEndDate(
+        LocalDate.now(ZoneId.of(SearchConsoleConstants.SEARCH_CONSOLE_TIME_ZONE)));
+      // the job reads watermarks from the qualified path, so they are saved to the file system they were read from
+      watermarkConfiguration = new Configuration();
+      Path path = new Path(config.getWatermarkPath());
+      watermarkPath = path.getFileSystem(watermarkConfiguration).makeQualified(path).toString();
+      overrides.put(SearchConsoleSourceConfig.WATERMARK_PATH, watermarkPath);
+    }
+    context.setInput(Input.of(config.referenceName, new SearchConsoleInputFormatProvider(
+      config, overrides, getMetricsScope(context), incrementalEndDate, incrementalSites)));
   }
 
   /**
-   * Transforms ApiDataRow into StructuredRecord
+   * Readers of the run record into the {@link SearchConsoleFetchMetrics} of this scope, which are emitted only by
+   * this stage of the same run.
    *
-   * @param input   link{ApiDataRow}
-   * @param emitter link{StructuredRecord}
-   * @throws Exception when transform operation fails
+   * @param context {@link StageContext}
+   * @return scope of the {@link SearchConsoleFetchMetrics} of the stage and run
    */
-  @Override
-  public void transform(KeyValue<String, ApiDataRow> input, Emitter<StructuredRecord> emitter)
-    throws Exception {
-    Schema outputSchema = config.getParsedSchema();
-    StructuredRecord.Builder builder = StructuredRecord.builder(outputSchema);
-    ApiDataRow row = input.getValue();
-    mapDimensionKeys(row, builder, outputSchema);
-    mapDimensionValues(row, builder, outputSchema);
-    StructuredRecord record = builder.build();
-    emitter.emit(record);
+  private static String getMetricsScope(StageContext context) {
+    return SearchConsoleFetchMetrics.getScope(context.getNamespace(), context.getPipelineName(),
+                                              context.getStageName(), context.getLogicalStartTime());
   }
 
   /**
-   * Maps dimensions array from link{ApiDataRow} into link{StructuredRecord}
+   * Dimensions which are not fields of the output schema are not requested, as they would only multiply the rows
+   * returned by the API, which the transform drops anyway.
    *
-   * @param row          link{ApiDataRow}
-   * @param builder      link{StructuredRecord.Builder}
-   * @param outputSchema link{Schema}
-   * @throws IOException is raised if field cannot be converted
+   * @param schema {@link Schema} output schema
+   * @return dimensions requested from the API
    */
-  private void mapDimensionValues(ApiDataRow row, StructuredRecord.Builder builder, Schema outputSchema)
-    throws IOException {
-    for (Schema.Field field : outputSchema.getFields()) {
-      if (Optional.ofNullable(row.get(field.getName())).isPresent()) {
-        builder.set(field.getName(),
-                    SearchConsoleUtils.convertField(row.get(field.getName()), field.getSchema()));
+  private List<String> getProjectedDimensions(Schema schema) {
+    List<String> dimensions = config.getProjectedDimensions(schema);
+    List<String> dropped = config.getDimensions().stream()
+      .filter(dimension -> !dimensions.contains(dimension))
+      .collect(Collectors.toList());
+    if (!dropped.isEmpty()) {
+      LOG.warn("Dimensions {} are not fields of the output schema and will not be requested", dropped);
+    }
+    return dimensions;
+  }
+
+  /**
+   * Advances watermarks of the sites read by a successful incremental run to its end date.
+   *
+   * @param succeeded whether the run succeeded
+   * @param context   {@link BatchSourceContext}
+   */
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    super.onRunFinish(succeeded, context);
+    if (!succeeded || incrementalSites == null || incrementalEndDate.isBefore(config.getDateRange().getStartDate())) {
+      return;
+    }
+    try {
+      SearchConsoleWatermarkStore store = SearchConsoleWatermarkStore.of(watermarkPath, watermarkConfiguration);
+      Map<String, LocalDate> watermarks = store.load();
+      for (String site : incrementalSites) {
+        watermarks.merge(site, incrementalEndDate, (current, next) -> next.isAfter(current) ? next : current);
       }
+      store.save(watermarks);
+      LOG.info("Advanced watermarks of {} sites to {}", incrementalSites.size(), incrementalEndDate);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to save watermarks of the incremental run.", e);
     }
   }
 
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    super.initialize(context);
+    Schema schema = config.getParsedSchema();
+    transformPlan = SearchConsoleTransformPlan.of(schema, config.getProjectedDimensions(schema));
+    metrics = context.getMetrics();
+    fetchMetrics = SearchConsoleFetchMetrics.of(getMetricsScope(context));
+    lastEmitNanos = System.nanoTime();
+  }
+
   /**
-   * Map dimension fields to StructuredRecord schema
+   * Transforms SearchConsoleRow into StructuredRecord
    *
-   * @param row          {@link ApiDataRow}
-   * @param builder      {@link StructuredRecord}
-   * @param outputSchema {@link Schema}
-   * @throws IOException is raised if field cannot be converted
+   * @param input   link{SearchConsoleRow}
+   * @param emitter link{StructuredRecord}
+   * @throws Exception when transform operation fails
+   */
+  @Override
+  public void transform(KeyValue<String, SearchConsoleRow> input, Emitter<StructuredRecord> emitter)
+    throws Exception {
+    long start = System.nanoTime();
+    StructuredRecord record = transformPlan.transform(input.getValue());
+    conversionNanos += System.nanoTime() - start;
+    emitter.emit(record);
+    if (++records == METRICS_INTERVAL) {
+      emitMetrics();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (transformPlan != null) {
+      emitMetrics();
+    }
+    super.destroy();
+  }
+
+  /**
+   * Emits metrics since the last emission: hits and misses of the cache of converted dimension values, time
+   * spent converting rows, rate of emitted rows and the {@link SearchConsoleFetchMetrics} of the readers.
    */
-  private void mapDimensionKeys(ApiDataRow row, StructuredRecord.Builder builder, Schema outputSchema)
-    throws IOException {
-    List<String> dimensions = config.getDimensions();
-    for (int i = 0; i < dimensions.size(); i++) {
-      if (Optional.ofNullable(outputSchema.getField(dimensions.get(i))).isPresent()) {
-        Schema.Field field = outputSchema.getField(dimensions.get(i));
-        Object value = ((List) row.get(SearchConsoleConstants.DIMENSIONS_PROPERTY_NAME)).get(i);
-        builder.set(dimensions.get(i), SearchConsoleUtils.convertField(value, field.getSchema()));
+  private void emitMetrics() {
+    long now = System.nanoTime();
+    long hits = transformPlan.getConversionCacheHits();
+    long misses = transformPlan.getConversionCacheMisses();
+    if (metrics != null) {
+      metrics.count("conversion.cache.hits", (int) (hits - emittedHits));
+      metrics.count("conversion.cache.misses", (int) (misses - emittedMisses));
+      metrics.count("conversion.time.ms", (int) TimeUnit.NANOSECONDS.toMillis(conversionNanos));
+      if (now > lastEmitNanos) {
+        metrics.gauge("records.per.second", records * TimeUnit.SECONDS.toNanos(1) / (now - lastEmitNanos));
       }
+      fetchMetrics.drain(metrics::count);
     }
+    records = 0;
+    conversionNanos -= TimeUnit.MILLISECONDS.toNanos(TimeUnit.NANOSECONDS.toMillis(conversionNanos));
+    lastEmitNanos = now;
+    emittedHits = hits;
+    emittedMisses = misses;
   }
 
   /**
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -56,7 +57,48 @@ public class SearchConsoleSourceConfig extends ReferencePluginConfig {
   public static final String START_DATE = "startDate";
   public static final String END_DATE = "endDate";
   public static final String DIMENSIONS = "dimensions";
+  public static final String DIMENSION_FILTERS = "dimensionFilters";
   public static final String NUM_SPLITS = "numSplits";
+  public static final String DATE_WINDOW_DAYS = "dateWindowDays";
+  public static final String SPLIT_STRATEGY = "splitStrategy";
+  public static final String ROWS_PER_SPLIT = "rowsPerSplit";
+  public static final String QUERY_SUBDIVISION = "querySubdivision";
+  public static final String SUBDIVISION_DIMENSIONS = "subdivisionDimensions";
+  public static final String SATURATION_ROWS = "saturationRows";
+  public static final String FETCH_CONCURRENCY = "fetchConcurrency";
+  public static final String PREFETCH_DEPTH = "prefetchDepth";
+  public static final String MAX_QUERIES_PER_MINUTE = "maxQueriesPerMinute";
+  public static final String MAX_SITE_QUERIES_PER_MINUTE = "maxSiteQueriesPerMinute";
+  public static final int DEFAULT_MAX_QUERIES_PER_MINUTE = 1200;
+  public static final String MAX_RETRIES = "maxRetries";
+  public static final String SPLIT_RETRY_BUDGET = "splitRetryBudget";
+  public static final String RUN_RETRY_BUDGET = "runRetryBudget";
+  public static final String RESPONSE_PARSER = "responseParser";
+  public static final String DICTIONARY_SIZE = "dictionarySize";
+  public static final String EXTRACTION_MODE = "extractionMode";
+  public static final String WATERMARK_PATH = "watermarkPath";
+  public static final String FINALITY_DAYS = "finalityDays";
+  public static final String RESPONSE_CACHE_PATH = "responseCachePath";
+  public static final String RESPONSE_CACHE_MAX_SIZE_MB = "responseCacheMaxSizeMb";
+  public static final String RESPONSE_CACHE_MAX_AGE_DAYS = "responseCacheMaxAgeDays";
+  public static final String MAX_CONNECTIONS = "maxConnections";
+  public static final String CONNECT_TIMEOUT_SECONDS = "connectTimeoutSeconds";
+  public static final String READ_TIMEOUT_SECONDS = "readTimeoutSeconds";
+  public static final String KEEP_ALIVE_SECONDS = "keepAliveSeconds";
+  public static final String ROOT_URL = "rootUrl";
+  public static final int DEFAULT_MAX_RETRIES = 5;
+  public static final String DEFAULT_SUBDIVISION_DIMENSIONS = "country,device";
+  public static final int DEFAULT_SATURATION_ROWS = 50000;
+  public static final int DEFAULT_SPLIT_RETRY_BUDGET = 50;
+  public static final int DEFAULT_RUN_RETRY_BUDGET = 500;
+  public static final int DEFAULT_DICTIONARY_SIZE = 100000;
+  public static final int DEFAULT_FINALITY_DAYS = 3;
+  public static final int DEFAULT_RESPONSE_CACHE_MAX_SIZE_MB = 1024;
+  public static final int DEFAULT_RESPONSE_CACHE_MAX_AGE_DAYS = 30;
+  public static final int DEFAULT_MIN_CONNECTIONS = 32;
+  public static final int DEFAULT_CONNECT_TIMEOUT_SECONDS = 20;
+  public static final int DEFAULT_READ_TIMEOUT_SECONDS = 60;
+  public static final int DEFAULT_KEEP_ALIVE_SECONDS = 60;
   public static final String SCHEMA = "SCHEMA";
   public static final String AUTO_DETECT = "auto-detect";
   public static final String AUTHENTICATION_METHOD_OAUTH_CLIENT_ID = "oAuthClient";
@@ -125,6 +167,182 @@ public class SearchConsoleSourceConfig extends ReferencePluginConfig {
       + "Fewer splits may be created if the sites cannot be divided into the desired number of splits.")
   private int numSplits;
 
+  @Name(DATE_WINDOW_DAYS)
+  @Macro
+  @Nullable
+  @Description("Number of days in a single date window. When set, the date range is divided into windows of "
+    + "this size and splits are planned over sites and date windows. When not set, every split reads "
+    + "the whole date range.")
+  private Integer dateWindowDays;
+
+  @Name(SPLIT_STRATEGY)
+  @Macro
+  @Nullable
+  @Description("How sites and date windows are assigned to splits. 'siteCountOption' puts an equal number of "
+    + "sites into every split. 'estimatedCostOption' sends a sizing query per site before planning and "
+    + "balances the estimated row count of the splits.")
+  private String splitStrategy;
+
+  @Name(ROWS_PER_SPLIT)
+  @Macro
+  @Nullable
+  @Description("Maximum number of rows of a single site and date window read by one split. When set, sites with "
+    + "more rows in a date window are divided into ranges of rows, each read by its own split. The number of "
+    + "rows is probed before planning. Rounded up to whole pages of 25000 rows.")
+  private Integer rowsPerSplit;
+
+  @Name(QUERY_SUBDIVISION)
+  @Macro
+  @Nullable
+  @Description("'noneOption' reads every site and date window with a single query. 'saturatedOption' checks "
+    + "whether a query reaches the row ceiling of the API, beyond which rows are silently dropped, and divides "
+    + "such queries by date and by values of the subdivision dimensions until they are complete.")
+  private String querySubdivision;
+
+  @Name(SUBDIVISION_DIMENSIONS)
+  @Macro
+  @Nullable
+  @Description("Comma separated list of low cardinality dimensions saturated queries are divided by, in order, "
+    + "after they were divided by date. Only dimensions which are read are used. Defaults to 'country,device'.")
+  private String subdivisionDimensions;
+
+  @Name(SATURATION_ROWS)
+  @Macro
+  @Nullable
+  @Description("Number of rows of a query at which it is considered saturated. Defaults to 50000.")
+  private Integer saturationRows;
+
+  @Name(FETCH_CONCURRENCY)
+  @Macro
+  @Nullable
+  @Description("Number of sites and date windows fetched at once by a single split. Defaults to 1.")
+  private Integer fetchConcurrency;
+
+  @Name(PREFETCH_DEPTH)
+  @Macro
+  @Nullable
+  @Description("Number of pages of a site requested ahead of the page being read. Defaults to 0, which "
+    + "requests the next page only once the current one is read.")
+  private Integer prefetchDepth;
+
+  @Name(MAX_QUERIES_PER_MINUTE)
+  @Macro
+  @Nullable
+  @Description("Maximum number of queries per minute sent with the credential by all splits running in the same "
+    + "executor. Defaults to 1200.")
+  private Integer maxQueriesPerMinute;
+
+  @Name(MAX_SITE_QUERIES_PER_MINUTE)
+  @Macro
+  @Nullable
+  @Description("Maximum number of queries per minute sent for a single site by all splits running in the same "
+    + "executor. Defaults to 1200.")
+  private Integer maxSiteQueriesPerMinute;
+
+  @Name(MAX_RETRIES)
+  @Macro
+  @Nullable
+  @Description("Maximum number of retries of a query failing with quota, server or timeout errors. Defaults to 5.")
+  private Integer maxRetries;
+
+  @Name(SPLIT_RETRY_BUDGET)
+  @Macro
+  @Nullable
+  @Description("Maximum number of retries of all queries of a split. Defaults to 50.")
+  private Integer splitRetryBudget;
+
+  @Name(RUN_RETRY_BUDGET)
+  @Macro
+  @Nullable
+  @Description("Maximum number of retries of all queries of a run, counted separately by every executor. "
+    + "Defaults to 500.")
+  private Integer runRetryBudget;
+
+  @Name(RESPONSE_PARSER)
+  @Macro
+  @Nullable
+  @Description("How query responses are parsed. 'clientLibraryOption' uses the Google API client library. "
+    + "'streamingOption' decodes the response body with a streaming parser straight into compact rows.")
+  private String responseParser;
+
+  @Name(DICTIONARY_SIZE)
+  @Macro
+  @Nullable
+  @Description("Maximum number of distinct dimension values shared by all pages of a split. Defaults to 100000, "
+    + "0 disables sharing of values between pages.")
+  private Integer dictionarySize;
+
+  @Name(EXTRACTION_MODE)
+  @Macro
+  @Nullable
+  @Description("'fullOption' reads the whole date range on every run. 'incrementalOption' reads only the days "
+    + "of every site after its watermark, the last final date read by a previous run.")
+  private String extractionMode;
+
+  @Name(WATERMARK_PATH)
+  @Macro
+  @Nullable
+  @Description("Path of the file storing watermarks of the sites in incremental mode, on the local file system "
+    + "or HDFS.")
+  private String watermarkPath;
+
+  @Name(FINALITY_DAYS)
+  @Macro
+  @Nullable
+  @Description("Number of most recent days whose data is not final yet. These days are not read in incremental "
+    + "mode and their responses are not cached. Defaults to 3.")
+  private Integer finalityDays;
+
+  @Name(RESPONSE_CACHE_PATH)
+  @Macro
+  @Nullable
+  @Description("Directory caching responses of final data, on the local file system or HDFS. Responses are not "
+    + "cached when it is not set.")
+  private String responseCachePath;
+
+  @Name(RESPONSE_CACHE_MAX_SIZE_MB)
+  @Macro
+  @Nullable
+  @Description("Maximum total size of the cached responses in megabytes. Defaults to 1024.")
+  private Integer responseCacheMaxSizeMb;
+
+  @Name(RESPONSE_CACHE_MAX_AGE_DAYS)
+  @Macro
+  @Nullable
+  @Description("Number of days a cached response is kept. Defaults to 30.")
+  private Integer responseCacheMaxAgeDays;
+
+  @Name(MAX_CONNECTIONS)
+  @Macro
+  @Nullable
+  @Description("Maximum number of pooled HTTP connections shared by all splits read in the same executor. "
+    + "Defaults to twice the number of requests a split sends at once, and at least 32.")
+  private Integer maxConnections;
+
+  @Name(CONNECT_TIMEOUT_SECONDS)
+  @Macro
+  @Nullable
+  @Description("Timeout of connecting to the API in seconds. Defaults to 20.")
+  private Integer connectTimeoutSeconds;
+
+  @Name(READ_TIMEOUT_SECONDS)
+  @Macro
+  @Nullable
+  @Description("Timeout of waiting for response data in seconds. Defaults to 60.")
+  private Integer readTimeoutSeconds;
+
+  @Name(KEEP_ALIVE_SECONDS)
+  @Macro
+  @Nullable
+  @Description("Number of seconds an idle connection is kept open for following requests. Defaults to 60.")
+  private Integer keepAliveSeconds;
+
+  @Name(ROOT_URL)
+  @Macro
+  @Nullable
+  @Description("Root URL of the Search Console API, for example of a local server used for testing. "
+    + "Defaults to https://www.googleapis.com/.")
+  private String rootUrl;
 
   @Macro
   @Name(START_DATE)
@@ -145,6 +363,14 @@ public class SearchConsoleSourceConfig extends ReferencePluginConfig {
   @Description("Comma separated list of dimensions to include")
   private String dimensions;
 
+  @Name(DIMENSION_FILTERS)
+  @Macro
+  @Nullable
+  @Description("Filters of dimension values applied by the API, so that only matching rows are read. Every filter "
+    + "is in 'dimension:operator:expression' format, for example 'country:equals:usa' or "
+    + "'page:contains:/blog/'. Rows have to match all filters.")
+  private String dimensionFilters;
+
   @Name("schema")
   @Macro
   @Description("Specifies the schema of the records outputted from this plugin.")
@@ -223,9 +449,32 @@ public class SearchConsoleSourceConfig extends ReferencePluginConfig {
   public List<String> getDimensions() {
     return Arrays.stream(dimensions.trim().split(SearchConsoleConstants.DIMENSIONS_DELIMITER))
       .map(String::trim)
+      .filter(dimension -> !dimension.isEmpty())
       .collect(Collectors.toList());
   }
 
+  /**
+   * @param schema {@link Schema} output schema
+   * @return dimensions which are fields of the output schema, in configured order
+   */
+  public List<String> getProjectedDimensions(Schema schema) {
+    return getDimensions().stream()
+      .filter(dimension -> schema.getField(dimension) != null)
+      .collect(Collectors.toList());
+  }
+
+  /**
+   * @return {@link List<DimensionFilter>} empty when no filters are set
+   * @throws IllegalArgumentException when a filter is not valid
+   */
+  public List<DimensionFilter> getDimensionFilters() {
+    return DimensionFilter.parseList(dimensionFilters);
+  }
+
+  public void setDimensionFilters(@Nullable String dimensionFilters) {
+    this.dimensionFilters = dimensionFilters;
+  }
+
   public String getSchema() {
     return schema;
   }
@@ -242,6 +491,269 @@ public class SearchConsoleSourceConfig extends ReferencePluginConfig {
     this.numSplits = numSplits;
   }
 
+  @Nullable
+  public Integer getDateWindowDays() {
+    return dateWindowDays;
+  }
+
+  public void setDateWindowDays(@Nullable Integer dateWindowDays) {
+    this.dateWindowDays = dateWindowDays;
+  }
+
+  public String getSplitStrategy() {
+    return Strings.isNullOrEmpty(splitStrategy) ? SearchConsoleConstants.SPLIT_STRATEGY_SITE_COUNT : splitStrategy;
+  }
+
+  public void setSplitStrategy(@Nullable String splitStrategy) {
+    this.splitStrategy = splitStrategy;
+  }
+
+  @Nullable
+  public Integer getRowsPerSplit() {
+    return rowsPerSplit;
+  }
+
+  public void setRowsPerSplit(@Nullable Integer rowsPerSplit) {
+    this.rowsPerSplit = rowsPerSplit;
+  }
+
+  public String getQuerySubdivision() {
+    return Strings.isNullOrEmpty(querySubdivision)
+      ? SearchConsoleConstants.QUERY_SUBDIVISION_NONE : querySubdivision;
+  }
+
+  public void setQuerySubdivision(@Nullable String querySubdivision) {
+    this.querySubdivision = querySubdivision;
+  }
+
+  public boolean isSubdivideSaturatedQueries() {
+    return SearchConsoleConstants.QUERY_SUBDIVISION_SATURATED.equals(getQuerySubdivision());
+  }
+
+  /**
+   * @return {@link List<String>} subdivision dimensions which are read, in configured order
+   */
+  public List<String> getSubdivisionDimensions() {
+    String value = Strings.isNullOrEmpty(subdivisionDimensions)
+      ? DEFAULT_SUBDIVISION_DIMENSIONS : subdivisionDimensions;
+    List<String> read = getDimensions();
+    return Arrays.stream(value.split(SearchConsoleConstants.DIMENSIONS_DELIMITER))
+      .map(String::trim)
+      .filter(read::contains)
+      .collect(Collectors.toList());
+  }
+
+  public void setSubdivisionDimensions(@Nullable String subdivisionDimensions) {
+    this.subdivisionDimensions = subdivisionDimensions;
+  }
+
+  public int getSaturationRows() {
+    return saturationRows == null ? DEFAULT_SATURATION_ROWS : saturationRows;
+  }
+
+  public void setSaturationRows(@Nullable Integer saturationRows) {
+    this.saturationRows = saturationRows;
+  }
+
+  public int getFetchConcurrency() {
+    return fetchConcurrency == null ? 1 : fetchConcurrency;
+  }
+
+  public void setFetchConcurrency(@Nullable Integer fetchConcurrency) {
+    this.fetchConcurrency = fetchConcurrency;
+  }
+
+  public int getPrefetchDepth() {
+    return prefetchDepth == null ? 0 : prefetchDepth;
+  }
+
+  public void setPrefetchDepth(@Nullable Integer prefetchDepth) {
+    this.prefetchDepth = prefetchDepth;
+  }
+
+  public int getMaxQueriesPerMinute() {
+    return maxQueriesPerMinute == null ? DEFAULT_MAX_QUERIES_PER_MINUTE : maxQueriesPerMinute;
+  }
+
+  public void setMaxQueriesPerMinute(@Nullable Integer maxQueriesPerMinute) {
+    this.maxQueriesPerMinute = maxQueriesPerMinute;
+  }
+
+  public int getMaxSiteQueriesPerMinute() {
+    return maxSiteQueriesPerMinute == null ? DEFAULT_MAX_QUERIES_PER_MINUTE : maxSiteQueriesPerMinute;
+  }
+
+  public void setMaxSiteQueriesPerMinute(@Nullable Integer maxSiteQueriesPerMinute) {
+    this.maxSiteQueriesPerMinute = maxSiteQueriesPerMinute;
+  }
+
+  public int getMaxRetries() {
+    return maxRetries == null ? DEFAULT_MAX_RETRIES : maxRetries;
+  }
+
+  public void setMaxRetries(@Nullable Integer maxRetries) {
+    this.maxRetries = maxRetries;
+  }
+
+  public int getSplitRetryBudget() {
+    return splitRetryBudget == null ? DEFAULT_SPLIT_RETRY_BUDGET : splitRetryBudget;
+  }
+
+  public void setSplitRetryBudget(@Nullable Integer splitRetryBudget) {
+    this.splitRetryBudget = splitRetryBudget;
+  }
+
+  public int getRunRetryBudget() {
+    return runRetryBudget == null ? DEFAULT_RUN_RETRY_BUDGET : runRetryBudget;
+  }
+
+  public void setRunRetryBudget(@Nullable Integer runRetryBudget) {
+    this.runRetryBudget = runRetryBudget;
+  }
+
+  public String getResponseParser() {
+    return Strings.isNullOrEmpty(responseParser) ? SearchConsoleConstants.RESPONSE_PARSER_CLIENT_LIBRARY
+      : responseParser;
+  }
+
+  public void setResponseParser(@Nullable String responseParser) {
+    this.responseParser = responseParser;
+  }
+
+  public int getDictionarySize() {
+    return dictionarySize == null ? DEFAULT_DICTIONARY_SIZE : dictionarySize;
+  }
+
+  public void setDictionarySize(@Nullable Integer dictionarySize) {
+    this.dictionarySize = dictionarySize;
+  }
+
+  public String getExtractionMode() {
+    return Strings.isNullOrEmpty(extractionMode) ? SearchConsoleConstants.EXTRACTION_MODE_FULL : extractionMode;
+  }
+
+  public void setExtractionMode(@Nullable String extractionMode) {
+    this.extractionMode = extractionMode;
+  }
+
+  public boolean isIncremental() {
+    return SearchConsoleConstants.EXTRACTION_MODE_INCREMENTAL.equals(getExtractionMode());
+  }
+
+  @Nullable
+  public String getWatermarkPath() {
+    return watermarkPath;
+  }
+
+  public void setWatermarkPath(@Nullable String watermarkPath) {
+    this.watermarkPath = watermarkPath;
+  }
+
+  public int getFinalityDays() {
+    return finalityDays == null ? DEFAULT_FINALITY_DAYS : finalityDays;
+  }
+
+  public void setFinalityDays(@Nullable Integer finalityDays) {
+    this.finalityDays = finalityDays;
+  }
+
+  @Nullable
+  public String getResponseCachePath() {
+    return responseCachePath;
+  }
+
+  public void setResponseCachePath(@Nullable String responseCachePath) {
+    this.responseCachePath = responseCachePath;
+  }
+
+  public int getResponseCacheMaxSizeMb() {
+    return responseCacheMaxSizeMb == null ? DEFAULT_RESPONSE_CACHE_MAX_SIZE_MB : responseCacheMaxSizeMb;
+  }
+
+  public void setResponseCacheMaxSizeMb(@Nullable Integer responseCacheMaxSizeMb) {
+    this.responseCacheMaxSizeMb = responseCacheMaxSizeMb;
+  }
+
+  public int getResponseCacheMaxAgeDays() {
+    return responseCacheMaxAgeDays == null ? DEFAULT_RESPONSE_CACHE_MAX_AGE_DAYS : responseCacheMaxAgeDays;
+  }
+
+  public void setResponseCacheMaxAgeDays(@Nullable Integer responseCacheMaxAgeDays) {
+    this.responseCacheMaxAgeDays = responseCacheMaxAgeDays;
+  }
+
+  /**
+   * @return maximum number of pooled connections, by default twice the number of requests a split sends at once
+   */
+  public int getMaxConnections() {
+    if (maxConnections != null) {
+      return maxConnections;
+    }
+    return Math.max(DEFAULT_MIN_CONNECTIONS, 2 * getFetchConcurrency() * (getPrefetchDepth() + 1));
+  }
+
+  public void setMaxConnections(@Nullable Integer maxConnections) {
+    this.maxConnections = maxConnections;
+  }
+
+  public int getConnectTimeoutSeconds() {
+    return connectTimeoutSeconds == null ? DEFAULT_CONNECT_TIMEOUT_SECONDS : connectTimeoutSeconds;
+  }
+
+  public void setConnectTimeoutSeconds(@Nullable Integer connectTimeoutSeconds) {
+    this.connectTimeoutSeconds = connectTimeoutSeconds;
+  }
+
+  public int getReadTimeoutSeconds() {
+    return readTimeoutSeconds == null ? DEFAULT_READ_TIMEOUT_SECONDS : readTimeoutSeconds;
+  }
+
+  public void setReadTimeoutSeconds(@Nullable Integer readTimeoutSeconds) {
+    this.readTimeoutSeconds = readTimeoutSeconds;
+  }
+
+  public int getKeepAliveSeconds() {
+    return keepAliveSeconds == null ? DEFAULT_KEEP_ALIVE_SECONDS : keepAliveSeconds;
+  }
+
+  public void setKeepAliveSeconds(@Nullable Integer keepAliveSeconds) {
+    this.keepAliveSeconds = keepAliveSeconds;
+  }
+
+  @Nullable
+  public String getRootUrl() {
+    return Strings.isNullOrEmpty(rootUrl) ? null : rootUrl;
+  }
+
+  public void setRootUrl(@Nullable String rootUrl) {
+    this.rootUrl = rootUrl;
+  }
+
+  /**
+   * @return {@link DateRange} between start and end date
+   */
+  public DateRange getDateRange() {
+    return DateRange.parse(startDate, endDate);
+  }
+
+  /**
+   * @param today current date in Pacific Time
+   * @return last date whose data is final
+   */
+  public LocalDate getLastFinalDate(LocalDate today) {
+    return today.minusDays(getFinalityDays());
+  }
+
+  /**
+   * @param today current date in Pacific Time
+   * @return last date read in incremental mode, the end date or the last final date if it is earlier
+   */
+  public LocalDate getIncrementalEndDate(LocalDate today) {
+    LocalDate lastFinalDate = getLastFinalDate(today);
+    LocalDate end = LocalDate.parse(endDate);
+    return end.isAfter(lastFinalDate) ? lastFinalDate : end;
+  }
+
   public String getAuthenticationMethod() {
     return authenticationMethod;
   }
@@ -328,6 +840,23 @@ public class SearchConsoleSourceConfig extends ReferencePluginConfig {
     this.schema = schema;
   }
 
+  /**
+   * Unknown values of options are rejected rather than read as the default option.
+   *
+   * @param failureCollector {@link FailureCollector}
+   * @param property         name of the property
+   * @param value            value of the property, null when not set
+   * @param options          allowed values of the property
+   */
+  private void validateOption(FailureCollector failureCollector, String property, @Nullable String value,
+                              String... options) {
+    if (!containsMacro(property) && !Strings.isNullOrEmpty(value) && !Arrays.asList(options).contains(value)) {
+      failureCollector.addFailure(String.format("Invalid value '%s' of '%s'.", value, property),
+                                  String.format("Value must be one of %s.", Arrays.toString(options)))
+        .withConfigProperty(property);
+    }
+  }
+
   public void validate(FailureCollector failureCollector) {
     if (!containsMacro(AUTHENTICATION_METHOD) && Strings
       .isNullOrEmpty(this.getAuthenticationMethod())) {
@@ -362,6 +891,19 @@ public class SearchConsoleSourceConfig extends ReferencePluginConfig {
       }
     }
 
+    validateOption(failureCollector, SPLIT_STRATEGY, splitStrategy,
+                   SearchConsoleConstants.SPLIT_STRATEGY_SITE_COUNT,
+                   SearchConsoleConstants.SPLIT_STRATEGY_ESTIMATED_COST);
+    validateOption(failureCollector, QUERY_SUBDIVISION, querySubdivision,
+                   SearchConsoleConstants.QUERY_SUBDIVISION_NONE,
+                   SearchConsoleConstants.QUERY_SUBDIVISION_SATURATED);
+    validateOption(failureCollector, RESPONSE_PARSER, responseParser,
+                   SearchConsoleConstants.RESPONSE_PARSER_CLIENT_LIBRARY,
+                   SearchConsoleConstants.RESPONSE_PARSER_STREAMING);
+    validateOption(failureCollector, EXTRACTION_MODE, extractionMode,
+                   SearchConsoleConstants.EXTRACTION_MODE_FULL,
+                   SearchConsoleConstants.EXTRACTION_MODE_INCREMENTAL);
+
     if (!containsMacro(START_DATE)) {
       try {
         dateIsParsable(this.getStartDate());
@@ -379,6 +921,86 @@ public class SearchConsoleSourceConfig extends ReferencePluginConfig {
         return;
       }
     }
+    if (!containsMacro(DATE_WINDOW_DAYS) && dateWindowDays != null && dateWindowDays < 1) {
+      failureCollector.addFailure("Invalid date window.", "Date window must contain at least one day.");
+    }
+    if (!containsMacro(DIMENSION_FILTERS)) {
+      try {
+        getDimensionFilters();
+      } catch (IllegalArgumentException e) {
+        failureCollector.addFailure(e.getMessage(), "Please provide filters as 'dimension:operator:expression'.");
+      }
+    }
+    if (!containsMacro(SUBDIVISION_DIMENSIONS) && !Strings.isNullOrEmpty(subdivisionDimensions)) {
+      for (String dimension : subdivisionDimensions.split(SearchConsoleConstants.DIMENSIONS_DELIMITER)) {
+        if (!DimensionFilter.DIMENSIONS.contains(dimension.trim())) {
+          failureCollector.addFailure(String.format("Invalid subdivision dimension '%s'.", dimension.trim()),
+                                      String.format("Subdivision dimensions must be some of %s.",
+                                                    DimensionFilter.DIMENSIONS));
+        }
+      }
+    }
+    if (!containsMacro(SATURATION_ROWS) && saturationRows != null && saturationRows < 1) {
+      failureCollector.addFailure("Invalid saturation rows.", "Saturation rows must be at least 1.");
+    }
+    if (!containsMacro(ROWS_PER_SPLIT) && rowsPerSplit != null && rowsPerSplit < 1) {
+      failureCollector.addFailure("Invalid rows per split.", "Rows per split must be at least 1.");
+    }
+    if (!containsMacro(FETCH_CONCURRENCY) && fetchConcurrency != null && fetchConcurrency < 1) {
+      failureCollector.addFailure("Invalid fetch concurrency.", "Fetch concurrency must be at least 1.");
+    }
+    if (!containsMacro(PREFETCH_DEPTH) && prefetchDepth != null && prefetchDepth < 0) {
+      failureCollector.addFailure("Invalid prefetch depth.", "Prefetch depth must not be negative.");
+    }
+    if (!containsMacro(MAX_QUERIES_PER_MINUTE) && maxQueriesPerMinute != null && maxQueriesPerMinute < 1) {
+      failureCollector.addFailure("Invalid query rate.", "Max queries per minute must be at least 1.");
+    }
+    if (!containsMacro(MAX_SITE_QUERIES_PER_MINUTE) && maxSiteQueriesPerMinute != null
+      && maxSiteQueriesPerMinute < 1) {
+      failureCollector.addFailure("Invalid site query rate.", "Max site queries per minute must be at least 1.");
+    }
+    if (!containsMacro(MAX_RETRIES) && maxRetries != null && maxRetries < 0) {
+      failureCollector.addFailure("Invalid max retries.", "Max retries must not be negative.");
+    }
+    if (!containsMacro(SPLIT_RETRY_BUDGET) && splitRetryBudget != null && splitRetryBudget < 0) {
+      failureCollector.addFailure("Invalid split retry budget.", "Split retry budget must not be negative.");
+    }
+    if (!containsMacro(RUN_RETRY_BUDGET) && runRetryBudget != null && runRetryBudget < 0) {
+      failureCollector.addFailure("Invalid run retry budget.", "Run retry budget must not be negative.");
+    }
+    if (!containsMacro(DICTIONARY_SIZE) && dictionarySize != null && dictionarySize < 0) {
+      failureCollector.addFailure("Invalid dictionary size.", "Dictionary size must not be negative.");
+    }
+    if (!containsMacro(EXTRACTION_MODE) && !containsMacro(WATERMARK_PATH) && isIncremental()
+      && Strings.isNullOrEmpty(watermarkPath)) {
+      failureCollector.addFailure("Watermark path empty.", "Watermark path needs to be provided in incremental mode.");
+    }
+    if (!containsMacro(FINALITY_DAYS) && finalityDays != null && finalityDays < 0) {
+      failureCollector.addFailure("Invalid finality days.", "Finality days must not be negative.");
+    }
+    if (!containsMacro(RESPONSE_CACHE_MAX_SIZE_MB) && responseCacheMaxSizeMb != null && responseCacheMaxSizeMb < 1) {
+      failureCollector.addFailure("Invalid response cache size.", "Response cache size must be at least 1 MB.");
+    }
+    if (!containsMacro(RESPONSE_CACHE_MAX_AGE_DAYS) && responseCacheMaxAgeDays != null
+      && responseCacheMaxAgeDays < 1) {
+      failureCollector.addFailure("Invalid response cache age.", "Response cache age must be at least 1 day.");
+    }
+    if (!containsMacro(MAX_CONNECTIONS) && maxConnections != null && maxConnections < 1) {
+      failureCollector.addFailure("Invalid max connections.", "Max connections must be at least 1.");
+    }
+    if (!containsMacro(CONNECT_TIMEOUT_SECONDS) && connectTimeoutSeconds != null && connectTimeoutSeconds < 1) {
+      failureCollector.addFailure("Invalid connect timeout.", "Connect timeout must be at least 1 second.");
+    }
+    if (!containsMacro(READ_TIMEOUT_SECONDS) && readTimeoutSeconds != null && readTimeoutSeconds < 1) {
+      failureCollector.addFailure("Invalid read timeout.", "Read timeout must be at least 1 second.");
+    }
+    if (!containsMacro(ROOT_URL) && !Strings.isNullOrEmpty(rootUrl)
+      && !rootUrl.startsWith("http://") && !rootUrl.startsWith("https://")) {
+      failureCollector.addFailure("Invalid root URL.", "Root URL must start with http:// or https://.");
+    }
+    if (!containsMacro(KEEP_ALIVE_SECONDS) && keepAliveSeconds != null && keepAliveSeconds < 1) {
+      failureCollector.addFailure("Invalid keep alive.", "Keep alive must be at least 1 second.");
+    }
     if (!containsMacro(AUTHENTICATION_METHOD) && !containsMacro(CLIENT_ID) && !containsMacro(CLIENT_SECRET)
       && !containsMacro(CLIENT_ACCESS_TOKEN) && !containsMacro(SERVICE_ACCOUNT_FILE)
       && !containsMacro(SERVICE_ACCOUNT_JSON)) {
@@ -477,6 +1099,11 @@ public class SearchConsoleSourceConfig extends ReferencePluginConfig {
         .setDimensions(properties.get(SearchConsoleSourceConfig.DIMENSIONS).getAsString());
     }
 
+    if (properties.has(SearchConsoleSourceConfig.DIMENSION_FILTERS)) {
+      searchConsoleSourceConfig
+        .setDimensionFilters(properties.get(SearchConsoleSourceConfig.DIMENSION_FILTERS).getAsString());
+    }
+
     if (properties.has(SearchConsoleSourceConfig.START_DATE)) {
       searchConsoleSourceConfig
         .setStartDate(properties.get(SearchConsoleSourceConfig.START_DATE).getAsString());
@@ -497,6 +1124,134 @@ public class SearchConsoleSourceConfig extends ReferencePluginConfig {
         .setNumSplits(properties.get(SearchConsoleSourceConfig.NUM_SPLITS).getAsInt());
     }
 
+    if (properties.has(SearchConsoleSourceConfig.DATE_WINDOW_DAYS)) {
+      searchConsoleSourceConfig
+        .setDateWindowDays(properties.get(SearchConsoleSourceConfig.DATE_WINDOW_DAYS).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.SPLIT_STRATEGY)) {
+      searchConsoleSourceConfig
+        .setSplitStrategy(properties.get(SearchConsoleSourceConfig.SPLIT_STRATEGY).getAsString());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.ROWS_PER_SPLIT)) {
+      searchConsoleSourceConfig
+        .setRowsPerSplit(properties.get(SearchConsoleSourceConfig.ROWS_PER_SPLIT).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.QUERY_SUBDIVISION)) {
+      searchConsoleSourceConfig
+        .setQuerySubdivision(properties.get(SearchConsoleSourceConfig.QUERY_SUBDIVISION).getAsString());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.SUBDIVISION_DIMENSIONS)) {
+      searchConsoleSourceConfig
+        .setSubdivisionDimensions(properties.get(SearchConsoleSourceConfig.SUBDIVISION_DIMENSIONS).getAsString());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.SATURATION_ROWS)) {
+      searchConsoleSourceConfig
+        .setSaturationRows(properties.get(SearchConsoleSourceConfig.SATURATION_ROWS).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.FETCH_CONCURRENCY)) {
+      searchConsoleSourceConfig
+        .setFetchConcurrency(properties.get(SearchConsoleSourceConfig.FETCH_CONCURRENCY).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.PREFETCH_DEPTH)) {
+      searchConsoleSourceConfig
+        .setPrefetchDepth(properties.get(SearchConsoleSourceConfig.PREFETCH_DEPTH).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.MAX_QUERIES_PER_MINUTE)) {
+      searchConsoleSourceConfig
+        .setMaxQueriesPerMinute(properties.get(SearchConsoleSourceConfig.MAX_QUERIES_PER_MINUTE).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.MAX_SITE_QUERIES_PER_MINUTE)) {
+      searchConsoleSourceConfig.setMaxSiteQueriesPerMinute(
+        properties.get(SearchConsoleSourceConfig.MAX_SITE_QUERIES_PER_MINUTE).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.MAX_RETRIES)) {
+      searchConsoleSourceConfig.setMaxRetries(properties.get(SearchConsoleSourceConfig.MAX_RETRIES).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.SPLIT_RETRY_BUDGET)) {
+      searchConsoleSourceConfig
+        .setSplitRetryBudget(properties.get(SearchConsoleSourceConfig.SPLIT_RETRY_BUDGET).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.RUN_RETRY_BUDGET)) {
+      searchConsoleSourceConfig
+        .setRunRetryBudget(properties.get(SearchConsoleSourceConfig.RUN_RETRY_BUDGET).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.RESPONSE_PARSER)) {
+      searchConsoleSourceConfig
+        .setResponseParser(properties.get(SearchConsoleSourceConfig.RESPONSE_PARSER).getAsString());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.DICTIONARY_SIZE)) {
+      searchConsoleSourceConfig
+        .setDictionarySize(properties.get(SearchConsoleSourceConfig.DICTIONARY_SIZE).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.EXTRACTION_MODE)) {
+      searchConsoleSourceConfig
+        .setExtractionMode(properties.get(SearchConsoleSourceConfig.EXTRACTION_MODE).getAsString());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.WATERMARK_PATH)) {
+      searchConsoleSourceConfig
+        .setWatermarkPath(properties.get(SearchConsoleSourceConfig.WATERMARK_PATH).getAsString());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.FINALITY_DAYS)) {
+      searchConsoleSourceConfig
+        .setFinalityDays(properties.get(SearchConsoleSourceConfig.FINALITY_DAYS).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.RESPONSE_CACHE_PATH)) {
+      searchConsoleSourceConfig
+        .setResponseCachePath(properties.get(SearchConsoleSourceConfig.RESPONSE_CACHE_PATH).getAsString());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.RESPONSE_CACHE_MAX_SIZE_MB)) {
+      searchConsoleSourceConfig.setResponseCacheMaxSizeMb(
+        properties.get(SearchConsoleSourceConfig.RESPONSE_CACHE_MAX_SIZE_MB).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.RESPONSE_CACHE_MAX_AGE_DAYS)) {
+      searchConsoleSourceConfig.setResponseCacheMaxAgeDays(
+        properties.get(SearchConsoleSourceConfig.RESPONSE_CACHE_MAX_AGE_DAYS).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.MAX_CONNECTIONS)) {
+      searchConsoleSourceConfig
+        .setMaxConnections(properties.get(SearchConsoleSourceConfig.MAX_CONNECTIONS).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.CONNECT_TIMEOUT_SECONDS)) {
+      searchConsoleSourceConfig
+        .setConnectTimeoutSeconds(properties.get(SearchConsoleSourceConfig.CONNECT_TIMEOUT_SECONDS).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.READ_TIMEOUT_SECONDS)) {
+      searchConsoleSourceConfig
+        .setReadTimeoutSeconds(properties.get(SearchConsoleSourceConfig.READ_TIMEOUT_SECONDS).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.KEEP_ALIVE_SECONDS)) {
+      searchConsoleSourceConfig
+        .setKeepAliveSeconds(properties.get(SearchConsoleSourceConfig.KEEP_ALIVE_SECONDS).getAsInt());
+    }
+
+    if (properties.has(SearchConsoleSourceConfig.ROOT_URL)) {
+      searchConsoleSourceConfig.setRootUrl(properties.get(SearchConsoleSourceConfig.ROOT_URL).getAsString());
+    }
+
     return searchConsoleSourceConfig;
 
   }
@@ -21,40 +21,55 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Split for search console
+ * Split for search console, consisting of one or more queries of sites over a date window. Length of the split
+ * is the estimated cost of its queries, so that larger splits can be scheduled first.
  */
 public class SearchConsoleSplit extends InputSplit implements Writable {
 
-  private SearchConsoleQuery query;
+  private List<SearchConsoleQuery> queries;
 
   public SearchConsoleSplit() {
     // is needed for Hadoop deserialization
   }
 
   public SearchConsoleSplit(SearchConsoleQuery query) {
-    this.query = query;
+    this(Collections.singletonList(query));
+  }
+
+  public SearchConsoleSplit(List<SearchConsoleQuery> queries) {
+    this.queries = queries;
   }
 
   @Override
   public void write(final DataOutput dataOutput) throws IOException {
-    byte[] bytes = query.toByteArray();
-    dataOutput.writeInt(bytes.length);
-    dataOutput.write(bytes);
+    dataOutput.writeInt(queries.size());
+    for (SearchConsoleQuery query : queries) {
+      byte[] bytes = query.toByteArray();
+      dataOutput.writeInt(bytes.length);
+      dataOutput.write(bytes);
+    }
   }
 
   @Override
   public void readFields(final DataInput dataInput) throws IOException {
-    int length = dataInput.readInt();
-    byte[] bytes = new byte[length];
-    dataInput.readFully(bytes);
-    query = SearchConsoleQuery.parseFrom(bytes);
+    int size = dataInput.readInt();
+    queries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      int length = dataInput.readInt();
+      byte[] bytes = new byte[length];
+      dataInput.readFully(bytes);
+      queries.add(SearchConsoleQuery.parseFrom(bytes));
+    }
   }
 
   @Override
   public long getLength() {
-    return 0;
+    return queries.stream().mapToLong(SearchConsoleQuery::getCost).sum();
   }
 
   @Override
@@ -62,7 +77,7 @@ public class SearchConsoleSplit extends InputSplit implements Writable {
     return new String[0];
   }
 
-  public SearchConsoleQuery getQuery() {
-    return this.query;
+  public List<SearchConsoleQuery> getQueries() {
+    return this.queries;
   }
 }
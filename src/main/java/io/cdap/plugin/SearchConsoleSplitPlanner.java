@@ -0,0 +1,383 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Plans how sites and date windows are distributed among splits. Sites and date windows with more rows than
+ * fit into a split can be divided into ranges of rows, which are read by separate splits.
+ */
+public class SearchConsoleSplitPlanner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SearchConsoleSplitPlanner.class);
+
+  private final int numSplits;
+
+  public SearchConsoleSplitPlanner(int numSplits) {
+    this.numSplits = Math.max(numSplits, 1);
+  }
+
+  /**
+   * Finds days of every site missing after its watermark, so incremental runs read only new data. Sites with
+   * the same missing days are grouped, so they can be planned together.
+   *
+   * @param sites      {@link List<String>} list of sites (with prefix included)
+   * @param watermarks {@link Map} last date read of every site, sites read for the first time are missing
+   * @param dateRange  {@link DateRange} configured date range
+   * @param endDate    last date to be read
+   * @return {@link Map} sites of every missing date range, in order of the start dates
+   */
+  public static Map<DateRange, List<String>> getMissingRanges(List<String> sites, Map<String, LocalDate> watermarks,
+                                                              DateRange dateRange, LocalDate endDate) {
+    Map<DateRange, List<String>> missing = new LinkedHashMap<>();
+    for (String site : sites) {
+      LocalDate watermark = watermarks.get(site);
+      LocalDate start = watermark == null || watermark.isBefore(dateRange.getStartDate())
+        ? dateRange.getStartDate() : watermark.plusDays(1);
+      if (!start.isAfter(endDate)) {
+        missing.computeIfAbsent(new DateRange(start, endDate), range -> new ArrayList<>()).add(site);
+      }
+    }
+    return missing.entrySet().stream()
+      .sorted(Comparator.comparing(entry -> entry.getKey().getStartDate()))
+      .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+  }
+
+  /**
+   * Groups sites into equal-count groups and reads every group over each date window.
+   *
+   * @param sites   {@link List<String>} list of sites (with prefix included)
+   * @param windows {@link List<DateRange>} date windows
+   * @return queries of every split
+   */
+  public List<List<SearchConsoleQuery>> planBySiteCount(List<String> sites, List<DateRange> windows) {
+    List<List<SearchConsoleQuery>> splits = new ArrayList<>();
+    if (sites.isEmpty()) {
+      return splits;
+    }
+    final int totalSites = sites.size();
+    final int siteGroups = Math.min(Math.max(numSplits / windows.size(), 1), totalSites);
+    final int perPage = (int) Math.ceil((double) totalSites / (double) siteGroups);
+
+    final AtomicInteger counter = new AtomicInteger();
+    final Collection<List<String>> result = sites.stream()
+      .collect(Collectors.groupingBy(it -> counter.getAndIncrement() / perPage))
+      .values();
+
+    for (DateRange window : windows) {
+      result.forEach(siteGroup -> {
+        List<SearchConsoleQuery> queries = new ArrayList<>();
+        queries.add(new SearchConsoleQuery(siteGroup, window));
+        splits.add(queries);
+      });
+    }
+    return splits;
+  }
+
+  /**
+   * Bin-packs work units into splits of roughly equal estimated cost, using longest-processing-time-first:
+   * units are taken by descending cost and each is added to the split with the lowest total cost so far.
+   *
+   * @param units {@link List<WorkUnit>} sites and date windows with their estimated cost
+   * @return queries of every split
+   */
+  public List<List<SearchConsoleQuery>> planByCost(List<WorkUnit> units) {
+    List<WorkUnit> sorted = new ArrayList<>(units);
+    sorted.sort(Comparator.comparingLong(WorkUnit::getCost).reversed()
+                  .thenComparing(WorkUnit::getSite)
+                  .thenComparing(unit -> unit.getWindow().getStartDate()));
+
+    int bins = Math.min(numSplits, sorted.size());
+    PriorityQueue<Bin> queue = new PriorityQueue<>(Math.max(bins, 1), Comparator.comparingLong(Bin::getCost)
+      .thenComparingInt(Bin::getIndex));
+    for (int i = 0; i < bins; i++) {
+      queue.add(new Bin(i));
+    }
+    for (WorkUnit unit : sorted) {
+      Bin bin = queue.poll();
+      bin.add(unit);
+      queue.add(bin);
+    }
+
+    List<Bin> result = new ArrayList<>(queue);
+    result.sort(Comparator.comparingInt(Bin::getIndex));
+    return result.stream().map(Bin::toQueries).collect(Collectors.toList());
+  }
+
+  /**
+   * Divides work units with more rows than a split should read into ranges of rows, which are packed as units
+   * of their own. Units estimated within a single range are not probed, as a site has no more rows than
+   * impressions. Units which could not be probed are kept whole.
+   *
+   * @param units        {@link List<WorkUnit>} sites and date windows with their estimated cost
+   * @param rowsPerSplit maximum number of rows of a unit, rounded up to whole pages
+   * @param probe        {@link RowProbe} checking whether a site has rows at a start row
+   * @return {@link List<WorkUnit>} units, the ones with more rows replaced by their ranges
+   */
+  public static List<WorkUnit> splitRowRanges(List<WorkUnit> units, int rowsPerSplit, RowProbe probe) {
+    int rowsPerRange = getRowsPerRange(rowsPerSplit);
+    List<WorkUnit> result = new ArrayList<>();
+    for (WorkUnit unit : units) {
+      int ranges = unit.getCost() > rowsPerRange ? countRowRanges(unit.getSite(), unit.getWindow(), rowsPerRange,
+                                                                   probe) : 1;
+      if (ranges == 1) {
+        result.add(unit);
+        continue;
+      }
+      for (int range = 0; range < ranges; range++) {
+        long remaining = unit.getCost() - (long) range * rowsPerRange;
+        result.add(new WorkUnit(unit.getSite(), unit.getWindow(), Math.max(Math.min(remaining, rowsPerRange), 1),
+                                range * rowsPerRange, range == ranges - 1 ? null : (range + 1) * rowsPerRange));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Moves sites with more rows than a split should read out of the planned queries. Every range of rows of such
+   * site is read by a split of its own, added after the planned splits. Sites which could not be probed are
+   * kept in their queries.
+   *
+   * @param splits       queries of every split, as planned by site count
+   * @param rowsPerSplit maximum number of rows of a site over a date window, rounded up to whole pages
+   * @param probe        {@link RowProbe} checking whether a site has rows at a start row
+   * @return queries of every split
+   */
+  public static List<List<SearchConsoleQuery>> splitQueryRowRanges(List<List<SearchConsoleQuery>> splits,
+                                                                   int rowsPerSplit, RowProbe probe) {
+    int rowsPerRange = getRowsPerRange(rowsPerSplit);
+    List<List<SearchConsoleQuery>> result = new ArrayList<>();
+    List<List<SearchConsoleQuery>> rangeSplits = new ArrayList<>();
+    for (List<SearchConsoleQuery> split : splits) {
+      List<SearchConsoleQuery> queries = new ArrayList<>();
+      for (SearchConsoleQuery query : split) {
+        DateRange window = query.getDateRange();
+        List<String> sites = new ArrayList<>();
+        for (String site : query.getSites()) {
+          int ranges = countRowRanges(site, window, rowsPerRange, probe);
+          if (ranges == 1) {
+            sites.add(site);
+            continue;
+          }
+          for (int range = 0; range < ranges; range++) {
+            rangeSplits.add(Collections.singletonList(new SearchConsoleQuery(
+              Collections.singletonList(site), window, (long) rowsPerRange, range * rowsPerRange,
+              range == ranges - 1 ? null : (range + 1) * rowsPerRange)));
+          }
+        }
+        if (!sites.isEmpty()) {
+          queries.add(sites.size() == query.getSites().size() ? query : new SearchConsoleQuery(sites, window));
+        }
+      }
+      if (!queries.isEmpty()) {
+        result.add(queries);
+      }
+    }
+    result.addAll(rangeSplits);
+    return result;
+  }
+
+  /**
+   * @return rows per split rounded up to whole pages, capped so that start rows stay within int
+   */
+  static int getRowsPerRange(int rowsPerSplit) {
+    long pages = (rowsPerSplit + (long) SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT - 1)
+      / SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT;
+    long maxPages = Integer.MAX_VALUE / SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT;
+    return (int) Math.min(pages, maxPages) * SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT;
+  }
+
+  /**
+   * Counts ranges of rows of a site over a date window, by probing the first row of ranges. Ranges at doubling
+   * distances are probed until one is empty, then the last range with rows is found by bisection, so a site of
+   * n ranges takes about 2 log n probes.
+   *
+   * @return number of ranges with rows, 1 when the site could not be probed
+   */
+  static int countRowRanges(String site, DateRange window, int rowsPerRange, RowProbe probe) {
+    // ranges past the last one still starting within int are never probed
+    int maxRange = Integer.MAX_VALUE / rowsPerRange;
+    try {
+      // the first range is always read, so the last range with rows is at least the first one
+      int low = 0;
+      long high = 1;
+      while (high <= maxRange && probe.hasRows(site, window, (int) high * rowsPerRange)) {
+        low = (int) high;
+        high *= 2;
+      }
+      high = Math.min(high, (long) maxRange + 1);
+      while (high - low > 1) {
+        int middle = (int) ((low + high) / 2);
+        if (probe.hasRows(site, window, middle * rowsPerRange)) {
+          low = middle;
+        } else {
+          high = middle;
+        }
+      }
+      if (low > 0) {
+        LOG.info("Dividing site: {} from {} to {} into {} ranges of {} rows", site, window.getStartDate(),
+                 window.getEndDate(), low + 1, rowsPerRange);
+      }
+      return low + 1;
+    } catch (IOException e) {
+      LOG.warn("Failed to probe rows of site: {} - {}", site, e.getMessage());
+      return 1;
+    }
+  }
+
+  /**
+   * Checks whether a site has a row at a start row over a date window.
+   */
+  public interface RowProbe {
+
+    /**
+     * @param site     site (with prefix included)
+     * @param window   {@link DateRange} date window
+     * @param startRow row to check
+     * @return whether the site has a row at the start row
+     * @throws IOException when the check fails
+     */
+    boolean hasRows(String site, DateRange window, int startRow) throws IOException;
+  }
+
+  /**
+   * Single site over a single date window, with estimated cost of reading it. A unit can be limited to a range
+   * of rows of the site.
+   */
+  public static final class WorkUnit {
+
+    private final String site;
+    private final DateRange window;
+    private final long cost;
+    @Nullable
+    private final Integer startRow;
+    @Nullable
+    private final Integer endRow;
+
+    public WorkUnit(String site, DateRange window, long cost) {
+      this(site, window, cost, null, null);
+    }
+
+    public WorkUnit(String site, DateRange window, long cost, @Nullable Integer startRow,
+                    @Nullable Integer endRow) {
+      this.site = site;
+      this.window = window;
+      this.cost = cost;
+      this.startRow = startRow;
+      this.endRow = endRow;
+    }
+
+    public String getSite() {
+      return site;
+    }
+
+    public DateRange getWindow() {
+      return window;
+    }
+
+    public long getCost() {
+      return cost;
+    }
+
+    /**
+     * @return whether the unit is limited to a range of rows
+     */
+    public boolean isRowRange() {
+      return startRow != null;
+    }
+
+    @Nullable
+    public Integer getStartRow() {
+      return startRow;
+    }
+
+    @Nullable
+    public Integer getEndRow() {
+      return endRow;
+    }
+  }
+
+  /**
+   * Work units assigned to a single split.
+   */
+  private static final class Bin {
+
+    private final int index;
+    private final List<WorkUnit> units = new ArrayList<>();
+    private long cost;
+
+    private Bin(int index) {
+      this.index = index;
+    }
+
+    private int getIndex() {
+      return index;
+    }
+
+    private long getCost() {
+      return cost;
+    }
+
+    private void add(WorkUnit unit) {
+      units.add(unit);
+      cost += unit.getCost();
+    }
+
+    /**
+     * Merges units of the same date window into a single query, which keeps their total cost as estimated rows.
+     * Ranges of rows are queries of their own.
+     */
+    private List<SearchConsoleQuery> toQueries() {
+      Map<DateRange, List<String>> sitesByWindow = new LinkedHashMap<>();
+      Map<DateRange, Long> costByWindow = new HashMap<>();
+      List<SearchConsoleQuery> rowRanges = new ArrayList<>();
+      units.stream()
+        .sorted(Comparator.comparing(unit -> unit.getWindow().getStartDate()))
+        .forEach(unit -> {
+          if (unit.isRowRange()) {
+            rowRanges.add(new SearchConsoleQuery(Collections.singletonList(unit.getSite()), unit.getWindow(),
+                                                 unit.getCost(), unit.getStartRow(), unit.getEndRow()));
+            return;
+          }
+          sitesByWindow.computeIfAbsent(unit.getWindow(), window -> new ArrayList<>()).add(unit.getSite());
+          costByWindow.merge(unit.getWindow(), unit.getCost(), Long::sum);
+        });
+      List<SearchConsoleQuery> queries = sitesByWindow.entrySet().stream()
+        .map(entry -> new SearchConsoleQuery(entry.getValue(), entry.getKey(), costByWindow.get(entry.getKey())))
+        .collect(Collectors.toList());
+      queries.addAll(rowRanges);
+      return queries;
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Plan transforming {@link SearchConsoleRow} into {@link StructuredRecord} of the output schema. Every output
+ * field is bound once to the way its value is read from the row and to its converter, so transforming a row
+ * does not look at the schema or the configuration.
+ * <p>
+ * Converted values of dimension fields are cached by the codes of the page being transformed, so a value is
+ * converted once per distinct value of a page. The plan is not thread safe.
+ */
+public final class SearchConsoleTransformPlan {
+
+  private final Schema schema;
+  private final FieldBinding[] bindings;
+
+  private SearchConsoleTransformPlan(Schema schema, List<FieldBinding> bindings) {
+    this.schema = schema;
+    this.bindings = bindings.toArray(new FieldBinding[0]);
+  }
+
+  /**
+   * Builds plan of the output schema. Fields named after a dimension are read from the row keys by the
+   * position of the dimension, metrics, site and type fields from the row, other fields are left unset.
+   *
+   * @param schema     {@link Schema} output schema
+   * @param dimensions {@link List<String>} dimensions in order of the row keys
+   * @return {@link SearchConsoleTransformPlan}
+   */
+  public static SearchConsoleTransformPlan of(Schema schema, List<String> dimensions) {
+    List<FieldBinding> bindings = new ArrayList<>();
+    for (Schema.Field field : schema.getFields()) {
+      String name = field.getName();
+      int dimensionIndex = dimensions.indexOf(name);
+      if (dimensionIndex < 0) {
+        bindings.add(new FieldBinding(name, getAccessor(name),
+                                      SearchConsoleFieldConverters.of(getSourceType(name), field.getSchema())));
+      } else {
+        bindings.add(new DimensionBinding(name, dimensionIndex,
+                                          SearchConsoleFieldConverters.of(String.class, field.getSchema())));
+      }
+    }
+    return new SearchConsoleTransformPlan(schema, bindings);
+  }
+
+  /**
+   * @param row {@link SearchConsoleRow}
+   * @return {@link StructuredRecord} of the output schema, fields missing in the row are not set
+   * @throws IOException when a field cannot be converted
+   */
+  public StructuredRecord transform(SearchConsoleRow row) throws IOException {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (FieldBinding binding : bindings) {
+      Object value = binding.get(row);
+      if (value != null) {
+        builder.set(binding.name, value);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return number of dimension values taken from the cache of converted values
+   */
+  public long getConversionCacheHits() {
+    long hits = 0;
+    for (FieldBinding binding : bindings) {
+      if (binding instanceof DimensionBinding) {
+        hits += ((DimensionBinding) binding).hits;
+      }
+    }
+    return hits;
+  }
+
+  /**
+   * @return number of dimension values converted, because they were not cached yet
+   */
+  public long getConversionCacheMisses() {
+    long misses = 0;
+    for (FieldBinding binding : bindings) {
+      if (binding instanceof DimensionBinding) {
+        misses += ((DimensionBinding) binding).misses;
+      }
+    }
+    return misses;
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  private static Function<SearchConsoleRow, Object> getAccessor(String name) {
+    switch (name) {
+      case "clicks":
+        return row -> metric(row.getClicks());
+      case "impressions":
+        return row -> metric(row.getImpressions());
+      case "ctr":
+        return row -> metric(row.getCtr());
+      case "position":
+        return row -> metric(row.getPosition());
+      case "site":
+        return SearchConsoleRow::getSite;
+      case "type":
+        return SearchConsoleRow::getSiteType;
+      default:
+        return row -> null;
+    }
+  }
+
+  private static Double metric(double value) {
+    return Double.isNaN(value) ? null : value;
+  }
+
+  private static Class<?> getSourceType(String name) {
+    switch (name) {
+      case "clicks":
+      case "impressions":
+      case "ctr":
+      case "position":
+        return Double.class;
+      case "site":
+      case "type":
+        return String.class;
+      default:
+        return Object.class;
+    }
+  }
+
+  /**
+   * Output field bound to the way its value is read and converted.
+   */
+  private static class FieldBinding {
+    private final String name;
+    private final Function<SearchConsoleRow, Object> accessor;
+    protected final SearchConsoleFieldConverter converter;
+
+    private FieldBinding(String name, Function<SearchConsoleRow, Object> accessor,
+                         SearchConsoleFieldConverter converter) {
+      this.name = name;
+      this.accessor = accessor;
+      this.converter = converter;
+    }
+
+    /**
+     * @return converted value of the field, null when the row has no value for it
+     */
+    Object get(SearchConsoleRow row) throws IOException {
+      Object value = accessor.apply(row);
+      return value == null ? null : converter.convert(value);
+    }
+  }
+
+  /**
+   * Dimension field, which caches converted values of the current page by their codes.
+   */
+  private static final class DimensionBinding extends FieldBinding {
+    private final int dimension;
+    private SearchConsolePage page;
+    private Object[] values;
+    private long hits;
+    private long misses;
+
+    private DimensionBinding(String name, int dimension, SearchConsoleFieldConverter converter) {
+      super(name, row -> dimension < row.getKeyCount() ? row.getKey(dimension) : null, converter);
+      this.dimension = dimension;
+    }
+
+    @Override
+    Object get(SearchConsoleRow row) throws IOException {
+      if (dimension >= row.getKeyCount()) {
+        return null;
+      }
+      int code = row.getKeyCode(dimension);
+      if (code == SearchConsolePage.MISSING_KEY) {
+        return null;
+      }
+      if (row.getPage() != page) {
+        page = row.getPage();
+        values = new Object[page.getDictionarySize()];
+      }
+      Object value = values[code];
+      if (value != null) {
+        hits++;
+        return value;
+      }
+      misses++;
+      value = converter.convert(row.getKey(dimension));
+      values[code] = value;
+      return value;
+    }
+  }
+}
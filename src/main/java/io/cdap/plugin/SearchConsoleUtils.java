@@ -16,6 +16,7 @@
 package io.cdap.plugin;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
@@ -34,6 +35,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneOffset;
@@ -44,9 +48,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
+
 /**
  * Common utils for search console api
  */
@@ -97,9 +105,7 @@ public final class SearchConsoleUtils {
    */
   private static List<String> getAllSiteEntries(SearchConsoleSourceConfig consoleSourceConfig)
     throws IOException {
-    GoogleCredential googleCredential = generateCredential(consoleSourceConfig);
-    Webmasters webmasters = generateService(googleCredential);
-    return queryAllSites(webmasters);
+    return queryAllSites(generateService(consoleSourceConfig));
   }
 
   /**
@@ -154,9 +160,22 @@ public final class SearchConsoleUtils {
    */
   public static GoogleCredential generateCredential(SearchConsoleSourceConfig consoleSourceConfig)
     throws IOException {
+    return generateCredential(consoleSourceConfig, httpTransport);
+  }
+
+  /**
+   * Generates Google Credentials based on provided configuration, which request tokens through given transport.
+   *
+   * @param consoleSourceConfig {@link SearchConsoleSourceConfig}
+   * @param transport           {@link HttpTransport} used to request tokens
+   * @return GoogleCredential initialized with provided config
+   * @throws IOException on wrong credentials or network issue
+   */
+  public static GoogleCredential generateCredential(SearchConsoleSourceConfig consoleSourceConfig,
+                                                    HttpTransport transport) throws IOException {
     GoogleCredential credential = null;
     GoogleCredential.Builder builder = new GoogleCredential.Builder();
-    builder.setTransport(httpTransport);
+    builder.setTransport(transport);
     builder.setJsonFactory(jsonFactory);
     switch (consoleSourceConfig.getAuthenticationMethod()) {
       case SearchConsoleConstants.AUTH_TYPE_OAUTH:
@@ -169,11 +188,11 @@ public final class SearchConsoleUtils {
         break;
       case SearchConsoleConstants.AUTH_TYPE_SERVICE_ACCOUNT_FILE:
         if (SearchConsoleSourceConfig.AUTO_DETECT.equals(consoleSourceConfig.getServiceAccountFilePath())) {
-          credential = GoogleCredential.getApplicationDefault();
+          credential = GoogleCredential.getApplicationDefault(transport, jsonFactory);
         } else {
           File credentialPath = new File(consoleSourceConfig.getServiceAccountFilePath());
           InputStream inputStream = new FileInputStream(credentialPath);
-          credential = GoogleCredential.fromStream(inputStream, httpTransport, jsonFactory)
+          credential = GoogleCredential.fromStream(inputStream, transport, jsonFactory)
             .createScoped(Collections.singletonList(SearchConsoleSourceConfig.OAUTH_SCOPE));
         }
         break;
@@ -183,7 +202,7 @@ public final class SearchConsoleUtils {
         }
         InputStream jsonInputStream = new ByteArrayInputStream(
           consoleSourceConfig.getServiceAccountJson().getBytes());
-        credential = GoogleCredential.fromStream(jsonInputStream, httpTransport, jsonFactory)
+        credential = GoogleCredential.fromStream(jsonInputStream, transport, jsonFactory)
           .createScoped(Collections.singletonList(SearchConsoleSourceConfig.OAUTH_SCOPE));
         break;
     }
@@ -200,14 +219,95 @@ public final class SearchConsoleUtils {
   }
 
   /**
-   * Generates {@link Webmasters} service from {@link SearchConsoleSourceConfig}
+   * Generates {@link Webmasters} service sending requests through given pooled transport.
+   *
+   * @param credential {@link GoogleCredential}, null to send requests without credentials
+   * @param transport  {@link SearchConsoleHttpTransport}
+   * @param rootUrl    root URL of the API, null for the default one
+   * @return {@link Webmasters}
+   */
+  public static Webmasters generateService(@Nullable GoogleCredential credential, SearchConsoleHttpTransport transport,
+                                           @Nullable String rootUrl) {
+    Webmasters.Builder builder = new Webmasters.Builder(transport.getTransport(), jsonFactory, request -> {
+      if (credential != null) {
+        credential.initialize(request);
+      }
+      transport.initialize(request);
+    });
+    if (rootUrl != null) {
+      builder.setRootUrl(rootUrl);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Generates {@link Webmasters} service from {@link SearchConsoleSourceConfig}. Services are shared by all users
+   * of the same credential through {@link SearchConsoleClientRegistry}.
    *
    * @param config {@link SearchConsoleSourceConfig}
    * @return {@link Webmasters}
    * @throws IOException when fails to generate service
    */
   public static Webmasters generateService(SearchConsoleSourceConfig config) throws IOException {
-    return SearchConsoleUtils.generateService(SearchConsoleUtils.generateCredential(config));
+    return SearchConsoleClientRegistry.getInstance().getService(config);
+  }
+
+  /**
+   * Fingerprint identifying the credential of the configuration, without keeping its secrets.
+   *
+   * @param config {@link SearchConsoleSourceConfig}
+   * @return hex encoded SHA-256 of the credential properties
+   */
+  public static String getCredentialFingerprint(SearchConsoleSourceConfig config) {
+    return sha256Hex(Arrays.asList(config.getAuthenticationMethod(), config.getClientId(),
+                                   config.getClientSecret(), config.getClientAccessToken(),
+                                   config.getServiceAccountFilePath(), config.getServiceAccountJson()));
+  }
+
+  /**
+   * @param values {@link List<String>} values, nulls included
+   * @return hex encoded SHA-256 hash of the values
+   */
+  static String sha256Hex(List<String> values) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported.", e);
+    }
+    for (String value : values) {
+      digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Creates factory of daemon threads used for fetching data. Virtual threads are used when the runtime
+   * supports them, platform threads otherwise.
+   *
+   * @param name prefix of thread names
+   * @return {@link ThreadFactory}
+   */
+  public static ThreadFactory createFetchThreadFactory(String name) {
+    try {
+      // Thread.ofVirtual().name(name, 0).factory(), looked up reflectively as the plugin targets Java 8
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      AtomicInteger counter = new AtomicInteger();
+      return runnable -> {
+        Thread thread = new Thread(runnable, name + "-" + counter.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      };
+    }
   }
 
   /**
@@ -232,11 +332,11 @@ public final class SearchConsoleUtils {
         return TimeUnit.NANOSECONDS.toMicros(LocalTime.parse(field.toString()).toNanoOfDay());
       case TIMESTAMP_MILLIS:
         // by default set to start of day as api only returns date part
-        return Math.toIntExact(LocalDate.parse(field.toString()).atStartOfDay().toInstant(ZoneOffset.UTC)
-                                 .toEpochMilli());
+        return LocalDate.parse(field.toString()).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
       case TIMESTAMP_MICROS:
         // by default set to start of day as api only returns date part
-        return LocalDate.parse(field.toString()).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        return TimeUnit.MILLISECONDS.toMicros(
+          LocalDate.parse(field.toString()).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli());
       case DECIMAL:
         ByteBuffer value = (ByteBuffer) field;
         byte[] bytes = new byte[value.remaining()];
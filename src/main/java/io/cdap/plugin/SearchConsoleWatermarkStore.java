@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Stores per site watermarks of incremental extraction, the last date of a site which was read in full and
+ * whose data is final.
+ */
+public interface SearchConsoleWatermarkStore {
+
+  /**
+   * @param path          path of the watermarks, qualified when the run is prepared
+   * @param configuration {@link Configuration} of the file system
+   * @return {@link SearchConsoleWatermarkStore} at the path
+   */
+  static SearchConsoleWatermarkStore of(String path, Configuration configuration) {
+    return new SearchConsoleFileWatermarkStore(path, configuration);
+  }
+
+  /**
+   * @return {@link Map} watermark of every site read before, empty when nothing was read yet
+   * @throws IOException when watermarks cannot be read
+   */
+  Map<String, LocalDate> load() throws IOException;
+
+  /**
+   * Replaces all stored watermarks.
+   *
+   * @param watermarks {@link Map} watermark of every site
+   * @throws IOException when watermarks cannot be written
+   */
+  void save(Map<String, LocalDate> watermarks) throws IOException;
+}
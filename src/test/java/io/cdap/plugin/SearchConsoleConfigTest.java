@@ -15,12 +15,20 @@
  */
 package io.cdap.plugin;
 
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.etl.api.validation.CauseAttributes;
 import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 public class SearchConsoleConfigTest {
 
   @Rule
@@ -40,6 +48,58 @@ public class SearchConsoleConfigTest {
     Assert.assertEquals(1, collector.getValidationFailures().size());
   }
 
+  @Test
+  public void testDimensionFiltersConfig() {
+    SearchConsoleSourceConfig config = SearchConsoleSourceConfigHelper.newConfigBuilder()
+        .build();
+    config.setDimensionFilters("country:equals:usa" + SearchConsoleConstants.DIMENSION_FILTER_DELIMITER
+                                 + "page:includingRegex:https://example.com/blog/.*");
+
+    Assert.assertEquals(2, config.getDimensionFilters().size());
+    Assert.assertEquals(new DimensionFilter("page", "includingRegex", "https://example.com/blog/.*"),
+                        config.getDimensionFilters().get(1));
+    Assert.assertEquals(2, DimensionFilter.toFilterGroups(config.getDimensionFilters()).get(0).getFilters().size());
+
+    for (String filter : new String[]{"country:equals", "date:equals:2020-01-01", "country:startsWith:us"}) {
+      config.setDimensionFilters(filter);
+      try {
+        config.getDimensionFilters();
+        Assert.fail("Filter should not be valid: " + filter);
+      } catch (IllegalArgumentException e) {
+        Assert.assertTrue(e.getMessage().contains(filter));
+      }
+    }
+  }
+
+  @Test
+  public void testQuerySubdivisionConfig() {
+    SearchConsoleSourceConfig config = SearchConsoleSourceConfigHelper.newConfigBuilder()
+        .build();
+    Assert.assertFalse(config.isSubdivideSaturatedQueries());
+
+    config.setQuerySubdivision(SearchConsoleConstants.QUERY_SUBDIVISION_SATURATED);
+    config.setDimensions("date, device");
+    config.setSubdivisionDimensions("query, device, country");
+
+    Assert.assertTrue(config.isSubdivideSaturatedQueries());
+    // dimensions which are not read would aggregate rows of several values into one
+    Assert.assertEquals(Collections.singletonList("device"), config.getSubdivisionDimensions());
+    Assert.assertEquals(50000, config.getSaturationRows());
+  }
+
+  @Test
+  public void testProjectedDimensions() throws Exception {
+    SearchConsoleSourceConfig config = SearchConsoleSourceConfigHelper.newConfigBuilder()
+        .setSchema(SearchConsoleSourceConfigHelper.TEST_SCHEMA)
+        .build();
+    config.setDimensions("query, device, date, country");
+
+    Assert.assertEquals(Arrays.asList("device", "country"), config.getProjectedDimensions(config.getParsedSchema()));
+
+    config.setDimensions("query");
+    Assert.assertEquals(Collections.emptyList(), config.getProjectedDimensions(config.getParsedSchema()));
+  }
+
   @Test
   public void testDateConfig() {
     SearchConsoleSourceConfig config = SearchConsoleSourceConfigHelper.newConfigBuilder()
@@ -79,6 +139,31 @@ public class SearchConsoleConfigTest {
     Assert.assertEquals(1, collector.getValidationFailures().size());
   }
 
+  @Test
+  public void testUnknownOptionsAreRejected() {
+    SearchConsoleSourceConfig config = SearchConsoleSourceConfigHelper.newConfigBuilder()
+        .setSitesFilterOption(SearchConsoleSourceConfigHelper.TEST_FILTER_OPTION_LIST)
+        .build();
+    // sites are not listed from the API
+    config.setSitesUrlList(null);
+    config.setSplitStrategy("estimatedCost");
+    config.setQuerySubdivision("saturated");
+    config.setResponseParser("streamng");
+    config.setExtractionMode("incremantal");
+
+    MockFailureCollector collector = new MockFailureCollector();
+    config.validate(collector);
+    Set<String> properties = collector.getValidationFailures().stream()
+        .flatMap(failure -> failure.getCauses().stream())
+        .map(cause -> cause.getAttribute(CauseAttributes.STAGE_CONFIG))
+        .filter(Objects::nonNull)
+        .collect(Collectors.toSet());
+    Assert.assertEquals(ImmutableSet.of(SearchConsoleSourceConfig.SPLIT_STRATEGY,
+                                        SearchConsoleSourceConfig.QUERY_SUBDIVISION,
+                                        SearchConsoleSourceConfig.RESPONSE_PARSER,
+                                        SearchConsoleSourceConfig.EXTRACTION_MODE), properties);
+  }
+
   @Test
   public void testGetSiteUrlList() {
     SearchConsoleSourceConfig config = SearchConsoleSourceConfigHelper.newConfigBuilder()
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class SearchConsoleFieldConvertersTest {
+
+  @Test
+  public void testNumbersAreConvertedDirectly() throws Exception {
+    Double clicks = 42.0;
+    Assert.assertSame(clicks, convert(Double.class, Schema.Type.DOUBLE, clicks));
+    Assert.assertEquals(42L, convert(Double.class, Schema.Type.LONG, clicks));
+    Assert.assertEquals(42, convert(Double.class, Schema.Type.INT, clicks));
+    Assert.assertEquals(42.0f, convert(Double.class, Schema.Type.FLOAT, clicks));
+    Assert.assertEquals("42.0", convert(Double.class, Schema.Type.STRING, clicks));
+  }
+
+  @Test
+  public void testStringsAreParsed() throws Exception {
+    Assert.assertEquals(0.25, convert(String.class, Schema.Type.DOUBLE, "0.25"));
+    Assert.assertEquals(7L, convert(Object.class, Schema.Type.LONG, "7"));
+    Assert.assertEquals(true, convert(String.class, Schema.Type.BOOLEAN, "true"));
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testFractionalNumberIsNotConvertedToLong() throws Exception {
+    convert(Double.class, Schema.Type.LONG, 0.5);
+  }
+
+  @Test(expected = IOException.class)
+  public void testIntOverflowFails() throws Exception {
+    convert(Double.class, Schema.Type.INT, 1e12);
+  }
+
+  @Test
+  public void testDatesAreConvertedOnce() throws Exception {
+    SearchConsoleFieldConverter converter =
+      SearchConsoleFieldConverters.of(String.class, Schema.of(Schema.LogicalType.TIMESTAMP_MILLIS));
+    Object first = converter.convert("2020-05-05");
+
+    Assert.assertEquals(1588636800000L, first);
+    Assert.assertSame(first, converter.convert(new String("2020-05-05")));
+  }
+
+  @Test
+  public void testDateLogicalTypes() throws Exception {
+    Assert.assertEquals(18387, SearchConsoleFieldConverters.of(String.class, Schema.of(Schema.LogicalType.DATE))
+      .convert("2020-05-05"));
+    Assert.assertEquals(1588636800000000L, SearchConsoleFieldConverters
+      .of(String.class, Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)).convert("2020-05-05"));
+  }
+
+  private static Object convert(Class<?> sourceType, Schema.Type type, Object value) throws IOException {
+    return SearchConsoleFieldConverters.of(sourceType, Schema.nullableOf(Schema.of(type))).convert(value);
+  }
+}
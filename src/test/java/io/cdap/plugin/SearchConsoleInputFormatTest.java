@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.gson.JsonObject;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class SearchConsoleInputFormatTest {
+
+  private static final String SITES = "Domain__SITE_KV_DELIMITER__a.com__SITE_DELIMITER__"
+    + "Domain__SITE_KV_DELIMITER__b.com__SITE_DELIMITER__Domain__SITE_KV_DELIMITER__c.com";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testSplitsPerSite() throws Exception {
+    JsonObject properties = newProperties(SITES, "2020-01-01", "2020-01-30", 2);
+
+    List<InputSplit> splits = new SearchConsoleInputFormat().getSplits(newJobContext(properties));
+
+    Assert.assertEquals(2, splits.size());
+    SearchConsoleQuery query = ((SearchConsoleSplit) splits.get(0)).getQueries().get(0);
+    Assert.assertEquals(2, query.getSites().size());
+    Assert.assertEquals("2020-01-01", query.getStartDate());
+    Assert.assertEquals("2020-01-30", query.getEndDate());
+  }
+
+  @Test
+  public void testSplitsPerDateWindow() throws Exception {
+    JsonObject properties = newProperties("Domain__SITE_KV_DELIMITER__a.com", "2020-01-01", "2020-01-30", 50);
+    properties.addProperty(SearchConsoleSourceConfig.DATE_WINDOW_DAYS, 7);
+
+    List<InputSplit> splits = new SearchConsoleInputFormat().getSplits(newJobContext(properties));
+
+    Assert.assertEquals(5, splits.size());
+    SearchConsoleQuery first = ((SearchConsoleSplit) splits.get(0)).getQueries().get(0);
+    Assert.assertEquals("2020-01-01", first.getStartDate());
+    Assert.assertEquals("2020-01-07", first.getEndDate());
+    SearchConsoleQuery last = ((SearchConsoleSplit) splits.get(4)).getQueries().get(0);
+    Assert.assertEquals("2020-01-29", last.getStartDate());
+    Assert.assertEquals("2020-01-30", last.getEndDate());
+  }
+
+  @Test
+  public void testDateWindowsAreWidenedToNumSplits() throws Exception {
+    JsonObject properties = newProperties(SITES, "2020-01-01", "2020-01-30", 10);
+    properties.addProperty(SearchConsoleSourceConfig.DATE_WINDOW_DAYS, 1);
+
+    List<InputSplit> splits = new SearchConsoleInputFormat().getSplits(newJobContext(properties));
+
+    Assert.assertEquals(10, splits.size());
+    for (InputSplit split : splits) {
+      SearchConsoleQuery query = ((SearchConsoleSplit) split).getQueries().get(0);
+      Assert.assertEquals(3, query.getSites().size());
+      Assert.assertEquals(3, query.getDateRange().getDays());
+    }
+  }
+
+  @Test
+  public void testIncrementalSplitsReadOnlyMissingDays() throws Exception {
+    String watermarkPath = new File(temporaryFolder.getRoot(), "watermarks.json").getPath();
+    SearchConsoleWatermarkStore store = new SearchConsoleFileWatermarkStore(watermarkPath, new Configuration(false));
+    store.save(Collections.singletonMap("sc-domain:a.com", LocalDate.parse("2020-01-20")));
+    JsonObject properties = newProperties(
+      "a.com__SITE_KV_DELIMITER__Domain__SITE_DELIMITER__b.com__SITE_KV_DELIMITER__Domain__SITE_DELIMITER__"
+        + "c.com__SITE_KV_DELIMITER__Domain", "2020-01-01", "2020-01-30", 1);
+    properties.addProperty(SearchConsoleSourceConfig.EXTRACTION_MODE,
+                           SearchConsoleConstants.EXTRACTION_MODE_INCREMENTAL);
+    properties.addProperty(SearchConsoleSourceConfig.WATERMARK_PATH, watermarkPath);
+    JobContext jobContext = newJobContext(properties);
+    jobContext.getConfiguration().set(SearchConsoleConstants.INCREMENTAL_END_DATE_PROPERTY_NAME, "2020-01-25");
+
+    List<InputSplit> splits = new SearchConsoleInputFormat().getSplits(jobContext);
+
+    Assert.assertEquals(2, splits.size());
+    SearchConsoleQuery newSites = ((SearchConsoleSplit) splits.get(0)).getQueries().get(0);
+    Assert.assertEquals(2, newSites.getSites().size());
+    Assert.assertFalse(newSites.getSites().contains("sc-domain:a.com"));
+    Assert.assertEquals(DateRange.parse("2020-01-01", "2020-01-25"), newSites.getDateRange());
+    SearchConsoleQuery readSite = ((SearchConsoleSplit) splits.get(1)).getQueries().get(0);
+    Assert.assertEquals(Collections.singletonList("sc-domain:a.com"), readSite.getSites());
+    Assert.assertEquals(DateRange.parse("2020-01-21", "2020-01-25"), readSite.getDateRange());
+
+    Map<String, LocalDate> watermarks = store.load();
+    Assert.assertEquals(LocalDate.parse("2020-01-20"), watermarks.get("sc-domain:a.com"));
+  }
+
+  @Test
+  public void testIncrementalSplitsReadOnlyPreparedSites() throws Exception {
+    String watermarkPath = new File(temporaryFolder.getRoot(), "watermarks.json").getPath();
+    JsonObject properties = newProperties(
+      "a.com__SITE_KV_DELIMITER__Domain__SITE_DELIMITER__b.com__SITE_KV_DELIMITER__Domain__SITE_DELIMITER__"
+        + "c.com__SITE_KV_DELIMITER__Domain", "2020-01-01", "2020-01-30", 1);
+    properties.addProperty(SearchConsoleSourceConfig.EXTRACTION_MODE,
+                           SearchConsoleConstants.EXTRACTION_MODE_INCREMENTAL);
+    properties.addProperty(SearchConsoleSourceConfig.WATERMARK_PATH, watermarkPath);
+    JobContext jobContext = newJobContext(properties);
+    jobContext.getConfiguration().set(SearchConsoleConstants.INCREMENTAL_END_DATE_PROPERTY_NAME, "2020-01-25");
+    // sites listed when the run was prepared, whose watermarks are advanced when it finishes
+    jobContext.getConfiguration().set(SearchConsoleConstants.INCREMENTAL_SITES_PROPERTY_NAME,
+                                      "[\"sc-domain:a.com\",\"sc-domain:b.com\"]");
+
+    List<InputSplit> splits = new SearchConsoleInputFormat().getSplits(jobContext);
+
+    Assert.assertEquals(1, splits.size());
+    SearchConsoleQuery query = ((SearchConsoleSplit) splits.get(0)).getQueries().get(0);
+    Assert.assertEquals(Arrays.asList("sc-domain:a.com", "sc-domain:b.com"), query.getSites());
+  }
+
+  static JsonObject newProperties(String sites, String startDate, String endDate, int numSplits) {
+    JsonObject properties = new JsonObject();
+    properties.addProperty(SearchConsoleSourceConfig.PROPERTY_REFERENCE_NAME,
+                           SearchConsoleSourceConfigHelper.TEST_REF_NAME);
+    properties.addProperty(SearchConsoleSourceConfig.SITES_FILTER_OPTION,
+                           SearchConsoleConstants.SITES_FILTER_OPTION_LIST);
+    properties.addProperty(SearchConsoleSourceConfig.SITES_FILTERED_LIST, sites);
+    properties.addProperty(SearchConsoleSourceConfig.START_DATE, startDate);
+    properties.addProperty(SearchConsoleSourceConfig.END_DATE, endDate);
+    properties.addProperty(SearchConsoleSourceConfig.DIMENSIONS, SearchConsoleSourceConfigHelper.TEST_DIMENSIONS);
+    properties.addProperty(SearchConsoleSourceConfig.NUM_SPLITS, numSplits);
+    return properties;
+  }
+
+  static JobContext newJobContext(JsonObject properties) {
+    JsonObject config = new JsonObject();
+    config.add(SearchConsoleConstants.CONFIGURATION_PARSE_PROPERTY_NAME, properties);
+    Configuration configuration = new Configuration(false);
+    configuration.set(SearchConsoleConstants.CONFIGURATION_PROPERTY_NAME, config.toString());
+    JobContext jobContext = Mockito.mock(JobContext.class);
+    Mockito.when(jobContext.getConfiguration()).thenReturn(configuration);
+    return jobContext;
+  }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local stand-in for the sites list and search analytics query endpoints of the Webmasters v3 API, serving
+ * deterministic synthetic rows. Every site has a fixed number of rows, which are paged by start row and row
+ * limit of the query. Responses can be delayed by a uniformly distributed latency, and a share of queries can
+ * be rejected by quota or fail with a server error, decided by a seeded random, so that a sequential client
+ * sees the same failures on every run. Dimension filter groups of queries are applied to the rows before paging.
+ * <p>
+ * Point the source at the server with the root URL property set to {@link #getRootUrl()}.
+ */
+public class SearchConsoleMockServer implements Closeable {
+
+  private static final String SITES_PATH = "/webmasters/v3/sites";
+  private static final String QUERY_SUFFIX = "/searchAnalytics/query";
+  private static final String[] DEVICES = {"DESKTOP", "MOBILE", "TABLET"};
+
+  private final Map<String, Integer> siteRows = new LinkedHashMap<>();
+  private final Map<String, Integer> siteRowsPerDay = new HashMap<>();
+  private final AtomicLong queries = new AtomicLong();
+  private final AtomicLong rows = new AtomicLong();
+  private final AtomicLong rateLimited = new AtomicLong();
+  private final AtomicLong serverErrors = new AtomicLong();
+  private final Random random = new Random(42);
+  private long minLatencyMillis;
+  private long maxLatencyMillis;
+  private double rateLimitedRatio;
+  private double serverErrorRatio;
+  private int maxRowsPerResponse = SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT;
+  private int rowCeiling = Integer.MAX_VALUE;
+  private HttpServer server;
+  private ExecutorService executor;
+
+  /**
+   * @param site site url as listed by the API
+   * @param rowCount number of rows of the site
+   * @return this server
+   */
+  public SearchConsoleMockServer addSite(String site, int rowCount) {
+    siteRows.put(site, rowCount);
+    return this;
+  }
+
+  /**
+   * Adds a site whose rows grow with the dates queried, rows of a day follow the rows of the previous day.
+   *
+   * @param site site url as listed by the API
+   * @param rowsPerDay number of rows of every day
+   * @return this server
+   */
+  public SearchConsoleMockServer addDailySite(String site, int rowsPerDay) {
+    siteRows.put(site, 0);
+    siteRowsPerDay.put(site, rowsPerDay);
+    return this;
+  }
+
+  /**
+   * @param minMillis minimum latency of a response
+   * @param maxMillis maximum latency of a response
+   * @return this server
+   */
+  public SearchConsoleMockServer setLatency(long minMillis, long maxMillis) {
+    this.minLatencyMillis = minMillis;
+    this.maxLatencyMillis = maxMillis;
+    return this;
+  }
+
+  /**
+   * @param rateLimitedRatio share of queries rejected with 429
+   * @param serverErrorRatio share of queries failing with 503
+   * @return this server
+   */
+  public SearchConsoleMockServer setFailures(double rateLimitedRatio, double serverErrorRatio) {
+    this.rateLimitedRatio = rateLimitedRatio;
+    this.serverErrorRatio = serverErrorRatio;
+    return this;
+  }
+
+  /**
+   * @param maxRowsPerResponse maximum number of rows returned by a query, regardless of its row limit
+   * @return this server
+   */
+  public SearchConsoleMockServer setMaxRowsPerResponse(int maxRowsPerResponse) {
+    this.maxRowsPerResponse = maxRowsPerResponse;
+    return this;
+  }
+
+  /**
+   * @param rowCeiling number of rows of a query after which further rows are dropped, as by the API
+   * @return this server
+   */
+  public SearchConsoleMockServer setRowCeiling(int rowCeiling) {
+    this.rowCeiling = rowCeiling;
+    return this;
+  }
+
+  /**
+   * Starts the server on a free port of the loopback address.
+   *
+   * @return this server
+   * @throws IOException when the server cannot be bound
+   */
+  public SearchConsoleMockServer start() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(SITES_PATH, this::handle);
+    executor = Executors.newFixedThreadPool(32);
+    server.setExecutor(executor);
+    server.start();
+    return this;
+  }
+
+  /**
+   * @return root URL of the server, to be set as root URL of the source
+   */
+  public String getRootUrl() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+  }
+
+  public long getQueries() {
+    return queries.get();
+  }
+
+  public long getRows() {
+    return rows.get();
+  }
+
+  public long getRateLimited() {
+    return rateLimited.get();
+  }
+
+  public long getServerErrors() {
+    return serverErrors.get();
+  }
+
+  @Override
+  public void close() {
+    if (server != null) {
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      // the path is decoded, url prefix sites keep their slashes
+      String path = exchange.getRequestURI().getPath();
+      if (path.equals(SITES_PATH) && "GET".equals(exchange.getRequestMethod())) {
+        respond(exchange, 200, listSites());
+      } else if (path.startsWith(SITES_PATH + "/") && path.endsWith(QUERY_SUFFIX)
+        && "POST".equals(exchange.getRequestMethod())) {
+        String site = path.substring(SITES_PATH.length() + 1, path.length() - QUERY_SUFFIX.length());
+        query(exchange, site, readRequest(exchange));
+      } else {
+        respond(exchange, 404, error(404, "Not Found", "notFound"));
+      }
+    } catch (RuntimeException e) {
+      respond(exchange, 500, error(500, e.toString(), "internalError"));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static JsonObject readRequest(HttpExchange exchange) throws IOException {
+    InputStream body = exchange.getRequestBody();
+    // the client library compresses request content
+    if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+      body = new GZIPInputStream(body);
+    }
+    try (InputStreamReader reader = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+      return new JsonParser().parse(reader).getAsJsonObject();
+    }
+  }
+
+  private void query(HttpExchange exchange, String site, JsonObject request) throws IOException {
+    queries.incrementAndGet();
+    double failure;
+    long latency;
+    synchronized (random) {
+      failure = random.nextDouble();
+      latency = minLatencyMillis + (long) (random.nextDouble() * (maxLatencyMillis - minLatencyMillis));
+    }
+    sleep(latency);
+    if (failure < rateLimitedRatio) {
+      rateLimited.incrementAndGet();
+      respond(exchange, 429, error(429, "Quota exceeded", "rateLimitExceeded"));
+      return;
+    }
+    if (failure < rateLimitedRatio + serverErrorRatio) {
+      serverErrors.incrementAndGet();
+      respond(exchange, 503, error(503, "Backend Error", "backendError"));
+      return;
+    }
+    Integer rowCount = siteRows.get(site);
+    if (rowCount == null) {
+      respond(exchange, 403, error(403, "User does not have sufficient permission for site", "forbidden"));
+      return;
+    }
+    respond(exchange, 200, queryRows(site, rowCount, request));
+  }
+
+  private JsonObject listSites() {
+    JsonArray entries = new JsonArray();
+    for (String site : siteRows.keySet()) {
+      JsonObject entry = new JsonObject();
+      entry.addProperty("siteUrl", site);
+      entry.addProperty("permissionLevel", "siteOwner");
+      entries.add(entry);
+    }
+    JsonObject response = new JsonObject();
+    response.add("siteEntry", entries);
+    return response;
+  }
+
+  private JsonObject queryRows(String site, int rowCount, JsonObject request) {
+    LocalDate startDate = LocalDate.parse(request.get("startDate").getAsString());
+    long days = ChronoUnit.DAYS.between(startDate, LocalDate.parse(request.get("endDate").getAsString())) + 1;
+    int rowsPerDay = siteRowsPerDay.getOrDefault(site, 0);
+    if (rowsPerDay > 0) {
+      rowCount = (int) Math.min(rowsPerDay * days, Integer.MAX_VALUE);
+    }
+    int startRow = request.has("startRow") ? request.get("startRow").getAsInt() : 0;
+    int rowLimit = request.has("rowLimit") ? request.get("rowLimit").getAsInt() : 1000;
+    int limit = Math.min(rowLimit, maxRowsPerResponse);
+    List<JsonObject> filters = getFilters(request);
+
+    JsonArray rowsArray = new JsonArray();
+    // without filters rows are paged by index, with filters by index among matching rows
+    int matched = 0;
+    for (int i = filters.isEmpty() ? startRow : 0; i < rowCount && rowsArray.size() < limit; i++) {
+      int index = i;
+      if (!filters.isEmpty()) {
+        if (!matches(filters, site, i, startDate, days, rowsPerDay)) {
+          continue;
+        }
+        index = matched++;
+      }
+      if (index >= rowCeiling) {
+        break;
+      }
+      if (index < startRow) {
+        continue;
+      }
+      JsonArray keys = new JsonArray();
+      if (request.has("dimensions")) {
+        for (JsonElement dimension : request.getAsJsonArray("dimensions")) {
+          keys.add(new JsonPrimitive(key(site, dimension.getAsString(), i, startDate, days, rowsPerDay)));
+        }
+      }
+      JsonObject row = new JsonObject();
+      row.add("keys", keys);
+      double clicks = i % 10;
+      double impressions = 10 + i % 100;
+      row.addProperty("clicks", clicks);
+      row.addProperty("impressions", impressions);
+      row.addProperty("ctr", clicks / impressions);
+      row.addProperty("position", 1 + i % 50);
+      rowsArray.add(row);
+    }
+    rows.addAndGet(rowsArray.size());
+    JsonObject response = new JsonObject();
+    if (rowsArray.size() > 0) {
+      response.add("rows", rowsArray);
+    }
+    response.addProperty("responseAggregationType", "byProperty");
+    return response;
+  }
+
+  private static List<JsonObject> getFilters(JsonObject request) {
+    List<JsonObject> filters = new ArrayList<>();
+    if (request.has("dimensionFilterGroups")) {
+      for (JsonElement group : request.getAsJsonArray("dimensionFilterGroups")) {
+        for (JsonElement filter : group.getAsJsonObject().getAsJsonArray("filters")) {
+          filters.add(filter.getAsJsonObject());
+        }
+      }
+    }
+    return filters;
+  }
+
+  private static boolean matches(List<JsonObject> filters, String site, int row, LocalDate startDate, long days,
+                                 int rowsPerDay) {
+    for (JsonObject filter : filters) {
+      String value = key(site, filter.get("dimension").getAsString(), row, startDate, days, rowsPerDay);
+      String expression = filter.get("expression").getAsString();
+      boolean match;
+      switch (filter.get("operator").getAsString()) {
+        case "equals":
+          match = value.equals(expression);
+          break;
+        case "notEquals":
+          match = !value.equals(expression);
+          break;
+        case "contains":
+          match = value.contains(expression);
+          break;
+        case "notContains":
+          match = !value.contains(expression);
+          break;
+        case "includingRegex":
+          match = Pattern.compile(expression).matcher(value).find();
+          break;
+        case "excludingRegex":
+          match = !Pattern.compile(expression).matcher(value).find();
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown operator " + filter.get("operator"));
+      }
+      if (!match) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String key(String site, String dimension, int row, LocalDate startDate, long days,
+                            int rowsPerDay) {
+    if (rowsPerDay > 0) {
+      if ("date".equals(dimension)) {
+        return startDate.plusDays(row / rowsPerDay).toString();
+      }
+      row %= rowsPerDay;
+    }
+    switch (dimension) {
+      case "date":
+        return startDate.plusDays(row % days).toString();
+      case "country":
+        return "c" + (row % 200);
+      case "device":
+        return DEVICES[row % DEVICES.length];
+      case "page":
+        return "https://" + site.replaceAll("^sc-domain:|^https?://|/$", "") + "/page/" + (row % 1000);
+      default:
+        return dimension + " " + row;
+    }
+  }
+
+  private static JsonObject error(int code, String message, String reason) {
+    JsonObject error = new JsonObject();
+    error.addProperty("code", code);
+    error.addProperty("message", message);
+    JsonArray errors = new JsonArray();
+    JsonObject item = new JsonObject();
+    item.addProperty("domain", "global");
+    item.addProperty("reason", reason);
+    item.addProperty("message", message);
+    errors.add(item);
+    error.add("errors", errors);
+    JsonObject response = new JsonObject();
+    response.add("error", error);
+    return response;
+  }
+
+  private static void respond(HttpExchange exchange, int status, JsonObject body) throws IOException {
+    byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  private static void sleep(long millis) {
+    if (millis <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.gson.JsonObject;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SearchConsoleMockServerTest {
+
+  @Test
+  public void testAllSitesAreReadThroughApi() throws Exception {
+    try (SearchConsoleMockServer server = new SearchConsoleMockServer()
+      .addSite("sc-domain:a.com", 60000)
+      .addSite("https://b.com/", 10)
+      .setFailures(0.2, 0.2)
+      .start()) {
+      JsonObject properties = newProperties(server);
+      properties.addProperty(SearchConsoleSourceConfig.NUM_SPLITS, 2);
+      // sequential requests see the same injected failures on every run
+      properties.addProperty(SearchConsoleSourceConfig.FETCH_CONCURRENCY, 1);
+      properties.addProperty(SearchConsoleSourceConfig.PREFETCH_DEPTH, 0);
+      JobContext jobContext = SearchConsoleInputFormatTest.newJobContext(properties);
+
+      List<InputSplit> splits = new SearchConsoleInputFormat().getSplits(jobContext);
+
+      Assert.assertEquals(2, splits.size());
+      Set<String> sites = new HashSet<>();
+      Assert.assertEquals(60010, read(splits, jobContext.getConfiguration(), sites));
+      Assert.assertEquals(60010, server.getRows());
+      Assert.assertEquals(2, sites.size());
+      Assert.assertTrue(server.getRateLimited() + server.getServerErrors() > 0);
+    }
+  }
+
+  @Test
+  public void testSiteWithoutPermissionFailsSplit() throws Exception {
+    try (SearchConsoleMockServer server = new SearchConsoleMockServer()
+      .addSite("sc-domain:a.com", 100)
+      .start()) {
+      JsonObject properties = newProperties(server);
+      properties.addProperty(SearchConsoleSourceConfig.SITES_FILTER_OPTION,
+                             SearchConsoleConstants.SITES_FILTER_OPTION_LIST);
+      properties.addProperty(SearchConsoleSourceConfig.SITES_FILTERED_LIST,
+                             "Domain" + SearchConsoleConstants.SITE_KV_DELIMITER + "a.com"
+                               + SearchConsoleConstants.SITE_DELIMITER
+                               + "Domain" + SearchConsoleConstants.SITE_KV_DELIMITER + "forbidden.com");
+      JobContext jobContext = SearchConsoleInputFormatTest.newJobContext(properties);
+
+      List<InputSplit> splits = new SearchConsoleInputFormat().getSplits(jobContext);
+
+      try {
+        read(splits, jobContext.getConfiguration(), new HashSet<>());
+        Assert.fail("Site without permission should fail the split");
+      } catch (UncheckedIOException e) {
+        Assert.assertTrue(e.getMessage().contains("403"));
+      }
+    }
+  }
+
+  @Test
+  public void testRowRangesAreReadBySeparateSplits() throws Exception {
+    try (SearchConsoleMockServer server = new SearchConsoleMockServer()
+      .addSite("sc-domain:a.com", 60000)
+      .addSite("https://b.com/", 10)
+      .start()) {
+      JsonObject properties = newProperties(server);
+      properties.addProperty(SearchConsoleSourceConfig.ROWS_PER_SPLIT, 25000);
+      JobContext jobContext = SearchConsoleInputFormatTest.newJobContext(properties);
+
+      List<InputSplit> splits = new SearchConsoleInputFormat().getSplits(jobContext);
+
+      // the small site keeps its split, the large one is read in three ranges
+      Assert.assertEquals(4, splits.size());
+      Assert.assertEquals(60010, read(splits, jobContext.getConfiguration(), new HashSet<>()));
+      // probes at rows 25000 and 50000 returned a row each
+      Assert.assertEquals(60012, server.getRows());
+    }
+  }
+
+  @Test
+  public void testDimensionFiltersArePushedDown() throws Exception {
+    try (SearchConsoleMockServer server = new SearchConsoleMockServer()
+      .addSite("sc-domain:a.com", 60000)
+      .start()) {
+      JsonObject properties = newProperties(server);
+      // every third row is mobile, one in 600 rows is also in country c0
+      properties.addProperty(SearchConsoleSourceConfig.DIMENSION_FILTERS,
+                             "device:equals:MOBILE" + SearchConsoleConstants.DIMENSION_FILTER_DELIMITER
+                               + "country:notEquals:c0");
+      JobContext jobContext = SearchConsoleInputFormatTest.newJobContext(properties);
+
+      List<InputSplit> splits = new SearchConsoleInputFormat().getSplits(jobContext);
+
+      Assert.assertEquals(19900, read(splits, jobContext.getConfiguration(), new HashSet<>()));
+      Assert.assertEquals(19900, server.getRows());
+    }
+  }
+
+  @Test
+  public void testSaturatedQueriesAreSubdivided() throws Exception {
+    try (SearchConsoleMockServer server = new SearchConsoleMockServer()
+      .addDailySite("sc-domain:a.com", 70000)
+      .setRowCeiling(50000)
+      .start()) {
+      JsonObject properties = newProperties(server);
+      properties.addProperty(SearchConsoleSourceConfig.START_DATE, "2020-01-01");
+      properties.addProperty(SearchConsoleSourceConfig.END_DATE, "2020-01-02");
+      properties.addProperty(SearchConsoleSourceConfig.DIMENSIONS, "date, device");
+      JobContext jobContext = SearchConsoleInputFormatTest.newJobContext(properties);
+
+      // rows beyond the ceiling are silently dropped
+      List<InputSplit> splits = new SearchConsoleInputFormat().getSplits(jobContext);
+      Assert.assertEquals(50000, read(splits, jobContext.getConfiguration(), new HashSet<>()));
+
+      // both days are still saturated, so every day is read by device
+      properties.addProperty(SearchConsoleSourceConfig.QUERY_SUBDIVISION,
+                             SearchConsoleConstants.QUERY_SUBDIVISION_SATURATED);
+      properties.addProperty(SearchConsoleSourceConfig.SUBDIVISION_DIMENSIONS, "device");
+      jobContext = SearchConsoleInputFormatTest.newJobContext(properties);
+      splits = new SearchConsoleInputFormat().getSplits(jobContext);
+      Assert.assertEquals(140000, read(splits, jobContext.getConfiguration(), new HashSet<>()));
+    }
+  }
+
+  private static JsonObject newProperties(SearchConsoleMockServer server) {
+    JsonObject properties = SearchConsoleInputFormatTest.newProperties("", "2020-01-01", "2020-01-31", 1);
+    properties.addProperty(SearchConsoleSourceConfig.SITES_FILTER_OPTION,
+                           SearchConsoleConstants.SITES_FILTER_OPTION_ALL_URLS);
+    properties.addProperty(SearchConsoleSourceConfig.AUTHENTICATION_METHOD, SearchConsoleConstants.AUTH_TYPE_OAUTH);
+    properties.addProperty(SearchConsoleSourceConfig.CLIENT_ID, "clientId");
+    properties.addProperty(SearchConsoleSourceConfig.CLIENT_SECRET, "clientSecret");
+    properties.addProperty(SearchConsoleSourceConfig.CLIENT_ACCESS_TOKEN, "accessToken");
+    properties.addProperty(SearchConsoleSourceConfig.ROOT_URL, server.getRootUrl());
+    return properties;
+  }
+
+  private static long read(List<InputSplit> splits, Configuration configuration, Set<String> sites)
+    throws Exception {
+    long records = 0;
+    for (InputSplit split : splits) {
+      TaskAttemptContext context = Mockito.mock(TaskAttemptContext.class);
+      Mockito.when(context.getConfiguration()).thenReturn(configuration);
+      Mockito.when(context.getJobID()).thenReturn(new JobID("mock", 1));
+      SearchConsoleRecordReader reader = new SearchConsoleRecordReader();
+      reader.initialize(split, context);
+      while (reader.nextKeyValue()) {
+        sites.add(reader.getCurrentValue().getSite());
+        records++;
+      }
+      Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+      reader.close();
+    }
+    return records;
+  }
+}
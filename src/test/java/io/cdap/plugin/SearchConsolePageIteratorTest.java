@@ -0,0 +1,247 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.services.webmasters.Webmasters;
+import com.google.api.services.webmasters.Webmasters.Searchanalytics.Query;
+import com.google.api.services.webmasters.model.ApiDataRow;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryRequest;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SearchConsolePageIteratorTest {
+
+  private static final String DOMAIN_SITE = SearchConsoleConstants.SEARCH_CONSOLE_DOMAIN_PREFIX + "example.com";
+  private static final String URL_SITE = "https://example.org/";
+  private static final SearchConsoleQueryExecutor QUERY_EXECUTOR =
+    new SearchConsoleQueryExecutor(new SearchConsoleRateLimiter(1000), 1000,
+                                   new SearchConsoleRetryPolicy(0, 0, new AtomicInteger(), 0, 0));
+
+  @Test
+  public void testPagesAreFetchedLazily() throws Exception {
+    Webmasters service = Mockito.mock(Webmasters.class, Mockito.RETURNS_DEEP_STUBS);
+    Mockito.when(service.searchanalytics().query(Mockito.eq(DOMAIN_SITE), Mockito.any()).execute())
+      .thenReturn(page(2), page(1), page(0));
+    Mockito.when(service.searchanalytics().query(Mockito.eq(URL_SITE), Mockito.any()).execute())
+      .thenReturn(page(3), page(0));
+
+    SearchConsoleQuery query = new SearchConsoleQuery(Arrays.asList(DOMAIN_SITE, URL_SITE),
+                                                      DateRange.parse("2020-01-01", "2020-01-31"));
+    SearchConsolePageIterator iterator =
+      new SearchConsolePageIterator(sitePages(service, Collections.singletonList(query), null, 0));
+    Mockito.verify(service.searchanalytics(), Mockito.never()).query(Mockito.anyString(), Mockito.any());
+
+    List<SearchConsolePage> pages = new ArrayList<>();
+    iterator.forEachRemaining(pages::add);
+
+    Assert.assertEquals(3, pages.size());
+    Assert.assertEquals(6, countRows(pages, null));
+    Assert.assertEquals(DOMAIN_SITE, pages.get(0).getSite());
+    Assert.assertEquals(SearchConsoleConstants.SITE_TYPE_DOMAIN, pages.get(0).getSiteType());
+    Assert.assertEquals(URL_SITE, pages.get(2).getSite());
+    Assert.assertEquals(SearchConsoleConstants.SITE_TYPE_URL_PREFIX, pages.get(2).getSiteType());
+    Assert.assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void testSitesAreFetchedConcurrently() throws Exception {
+    Webmasters service = Mockito.mock(Webmasters.class, Mockito.RETURNS_DEEP_STUBS);
+    Mockito.when(service.searchanalytics().query(Mockito.eq(DOMAIN_SITE), Mockito.any()).execute())
+      .thenReturn(page(2), page(1), page(0));
+    Mockito.when(service.searchanalytics().query(Mockito.eq(URL_SITE), Mockito.any()).execute())
+      .thenReturn(page(3), page(0));
+
+    List<SearchConsoleQuery> queries = Arrays.asList(
+      new SearchConsoleQuery(Collections.singletonList(DOMAIN_SITE), DateRange.parse("2020-01-01", "2020-01-31")),
+      new SearchConsoleQuery(Collections.singletonList(URL_SITE), DateRange.parse("2020-02-01", "2020-02-29")));
+    List<SearchConsolePage> pages = new ArrayList<>();
+    try (SearchConsoleConcurrentPageIterator iterator =
+           new SearchConsoleConcurrentPageIterator(sitePages(service, queries, null, 0), 2)) {
+      iterator.forEachRemaining(pages::add);
+      Assert.assertFalse(iterator.hasNext());
+    }
+
+    Assert.assertEquals(6, countRows(pages, null));
+    Assert.assertEquals(3, countRows(pages, DOMAIN_SITE));
+    Assert.assertEquals(3, countRows(pages, URL_SITE));
+  }
+
+  @Test
+  public void testPagesArePrefetched() throws Exception {
+    Webmasters service = Mockito.mock(Webmasters.class, Mockito.RETURNS_DEEP_STUBS);
+    List<Integer> pageSizes = Arrays.asList(3, 2, 1);
+    List<Integer> requestedPages = Collections.synchronizedList(new ArrayList<>());
+    Mockito.when(service.searchanalytics().query(Mockito.eq(DOMAIN_SITE), Mockito.any())).thenAnswer(invocation -> {
+      SearchAnalyticsQueryRequest request = invocation.getArgument(1);
+      int pageIndex = request.getStartRow() / SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT;
+      requestedPages.add(pageIndex);
+      Query query = Mockito.mock(Query.class);
+      Mockito.when(query.execute()).thenReturn(page(pageIndex < pageSizes.size() ? pageSizes.get(pageIndex) : 0));
+      return query;
+    });
+
+    SearchConsoleQuery query = new SearchConsoleQuery(Collections.singletonList(DOMAIN_SITE),
+                                                      DateRange.parse("2020-01-01", "2020-01-31"));
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    List<SearchConsolePage> pages = new ArrayList<>();
+    try {
+      new SearchConsolePageIterator(sitePages(service, Collections.singletonList(query), executor, 2))
+        .forEachRemaining(pages::add);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(6, countRows(pages, null));
+    // pages up to the first empty one plus at most the prefetch depth
+    Assert.assertTrue(requestedPages.size() <= pageSizes.size() + 1 + 2);
+    Assert.assertTrue(requestedPages.containsAll(Arrays.asList(0, 1, 2, 3)));
+  }
+
+  @Test
+  public void testShortPageEndsSite() throws Exception {
+    for (int prefetchDepth : new int[]{0, 2}) {
+      Webmasters service = Mockito.mock(Webmasters.class, Mockito.RETURNS_DEEP_STUBS);
+      // the page after the short one would only be returned by a broken server
+      List<Integer> pageSizes = Arrays.asList(3, 1, 3);
+      List<Integer> requestedPages = Collections.synchronizedList(new ArrayList<>());
+      Mockito.when(service.searchanalytics().query(Mockito.eq(DOMAIN_SITE), Mockito.any()))
+        .thenAnswer(invocation -> {
+          SearchAnalyticsQueryRequest request = invocation.getArgument(1);
+          int pageIndex = request.getStartRow() / SearchConsoleConstants.SEARCH_CONSOLE_MAX_ROW_LIMIT;
+          requestedPages.add(pageIndex);
+          Query query = Mockito.mock(Query.class);
+          Mockito.when(query.execute()).thenReturn(page(pageIndex < pageSizes.size() ? pageSizes.get(pageIndex) : 0));
+          return query;
+        });
+
+      SearchConsoleQuery query = new SearchConsoleQuery(Collections.singletonList(DOMAIN_SITE),
+                                                        DateRange.parse("2020-01-01", "2020-01-31"));
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      List<SearchConsolePage> pages = new ArrayList<>();
+      try {
+        new SearchConsolePageIterator(SearchConsoleSitePages.of(
+          new SearchConsolePageFetcher(service, QUERY_EXECUTOR, false),
+          new SearchAnalyticsQueryRequest().setRowLimit(3), Collections.singletonList(query),
+          prefetchDepth > 0 ? executor : null, prefetchDepth))
+          .forEachRemaining(pages::add);
+      } finally {
+        executor.shutdownNow();
+      }
+
+      Assert.assertEquals(4, countRows(pages, null));
+      // pages requested before the short page arrived, but no empty page after it
+      Assert.assertTrue(requestedPages.size() <= (prefetchDepth > 0 ? 2 + prefetchDepth : 2));
+    }
+  }
+
+  @Test
+  public void testSiteProgress() throws Exception {
+    Webmasters service = Mockito.mock(Webmasters.class, Mockito.RETURNS_DEEP_STUBS);
+    Mockito.when(service.searchanalytics().query(Mockito.eq(DOMAIN_SITE), Mockito.any()).execute())
+      .thenReturn(page(2), page(0));
+
+    // estimated cost is impressions, far more than the rows of the site
+    SearchConsoleQuery query = new SearchConsoleQuery(Collections.singletonList(DOMAIN_SITE),
+                                                      DateRange.parse("2020-01-01", "2020-01-31"), 1000000L);
+    SearchConsoleSitePages site = sitePages(service, Collections.singletonList(query), null, 0).get(0);
+
+    Assert.assertEquals(1000000.0, site.getCost(), 0.0);
+    Assert.assertEquals(0.0, site.getProgress(), 0.0);
+    site.next();
+    Assert.assertEquals(0.5, site.getProgress(), 0.0);
+    site.next();
+    Assert.assertEquals(1.0, site.getProgress(), 0.0);
+  }
+
+  @Test
+  public void testRowRangeProgress() throws Exception {
+    Webmasters service = Mockito.mock(Webmasters.class, Mockito.RETURNS_DEEP_STUBS);
+    Mockito.when(service.searchanalytics().query(Mockito.eq(DOMAIN_SITE), Mockito.any()).execute())
+      .thenReturn(page(2), page(0));
+    SearchConsoleQuery query = new SearchConsoleQuery(Collections.singletonList(DOMAIN_SITE),
+                                                      DateRange.parse("2020-01-01", "2020-01-31"), 1000000L,
+                                                      0, 50000);
+    SearchConsoleSitePages site = sitePages(service, Collections.singletonList(query), null, 0).get(0);
+
+    site.next();
+    Assert.assertEquals(2.0 / 50000, site.getProgress(), 0.0);
+  }
+
+  @Test
+  public void testRowRangeStopsAtEndRow() throws Exception {
+    for (int prefetchDepth : new int[]{0, 2}) {
+      Webmasters service = Mockito.mock(Webmasters.class, Mockito.RETURNS_DEEP_STUBS);
+      Mockito.when(service.searchanalytics().query(Mockito.eq(DOMAIN_SITE), Mockito.any()).execute())
+        .thenReturn(page(2));
+      // pages 1 and 2 of the site
+      SearchConsoleQuery query = new SearchConsoleQuery(Collections.singletonList(DOMAIN_SITE),
+                                                        DateRange.parse("2020-01-01", "2020-01-31"), 50000L,
+                                                        25000, 75000);
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+        SearchConsoleSitePages site = sitePages(service, Collections.singletonList(query),
+                                                prefetchDepth > 0 ? executor : null, prefetchDepth).get(0);
+        Assert.assertEquals(2, site.next().getSize());
+        Assert.assertEquals(2, site.next().getSize());
+        Assert.assertTrue(site.next().isEmpty());
+        Assert.assertFalse(site.hasMore());
+      } finally {
+        executor.shutdownNow();
+      }
+
+      ArgumentCaptor<SearchAnalyticsQueryRequest> requests =
+        ArgumentCaptor.forClass(SearchAnalyticsQueryRequest.class);
+      Mockito.verify(service.searchanalytics(), Mockito.times(2)).query(Mockito.eq(DOMAIN_SITE), requests.capture());
+      // prefetched pages are requested in any order
+      Assert.assertEquals(new HashSet<>(Arrays.asList(25000, 50000)),
+                          new HashSet<>(Arrays.asList(requests.getAllValues().get(0).getStartRow(),
+                                                      requests.getAllValues().get(1).getStartRow())));
+    }
+  }
+
+  private static int countRows(List<SearchConsolePage> pages, String site) {
+    return pages.stream().filter(page -> site == null || site.equals(page.getSite()))
+      .mapToInt(SearchConsolePage::getSize).sum();
+  }
+
+  private static List<SearchConsoleSitePages> sitePages(Webmasters service, List<SearchConsoleQuery> queries,
+                                                        ExecutorService prefetchExecutor, int prefetchDepth) {
+    return SearchConsoleSitePages.of(new SearchConsolePageFetcher(service, QUERY_EXECUTOR, false),
+                                     new SearchAnalyticsQueryRequest(), queries, prefetchExecutor, prefetchDepth);
+  }
+
+  private static SearchAnalyticsQueryResponse page(int size) {
+    SearchAnalyticsQueryResponse response = new SearchAnalyticsQueryResponse();
+    List<ApiDataRow> rows = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      rows.add(new ApiDataRow().setClicks(1.0).setKeys(Collections.singletonList("key" + i)));
+    }
+    response.setRows(rows);
+    return response;
+  }
+}
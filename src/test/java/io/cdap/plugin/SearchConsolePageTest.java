@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class SearchConsolePageTest {
+
+  private static final String SITE = "https://example.org/";
+
+  @Test
+  public void testRowsAreReadThroughCursor() {
+    SearchConsolePage.Builder builder =
+      SearchConsolePage.builder(SITE, SearchConsoleConstants.SITE_TYPE_URL_PREFIX, 2);
+    for (int i = 0; i < 100; i++) {
+      builder.setKey(0, i % 2 == 0 ? "usa" : "fra").setClicks(i).endRow();
+    }
+    SearchConsolePage page = builder.build();
+
+    SearchConsoleRowIterator rows = new SearchConsoleRowIterator(Arrays.asList(page, page).iterator());
+    int count = 0;
+    while (rows.hasNext()) {
+      SearchConsoleRow row = rows.next();
+      int index = count++ % 100;
+      Assert.assertEquals(SITE, row.getSite());
+      Assert.assertEquals(index % 2 == 0 ? "usa" : "fra", row.getKey(0));
+      Assert.assertNull(row.getKey(1));
+      Assert.assertEquals(index, row.getClicks(), 0.0);
+      Assert.assertTrue(Double.isNaN(row.getImpressions()));
+    }
+    Assert.assertEquals(200, count);
+  }
+
+  @Test
+  public void testValuesAreSharedBetweenPages() {
+    SearchConsoleDictionary dictionary = new SearchConsoleDictionary(2);
+    SearchConsolePage first = page(dictionary, "usa", "fra", "usa");
+    SearchConsolePage second = page(dictionary, "usa", "deu", "fra");
+
+    Assert.assertEquals(2, first.getDictionarySize());
+    Assert.assertSame(first.getKey(0, 0), second.getKey(0, 0));
+    Assert.assertSame(first.getKey(1, 0), second.getKey(2, 0));
+    Assert.assertEquals("deu", second.getKey(1, 0));
+    // dictionary is full, so the third value is not added
+    Assert.assertEquals(2, dictionary.getSize());
+    Assert.assertEquals(2, dictionary.getHits());
+    Assert.assertEquals(3, dictionary.getMisses());
+    Assert.assertEquals(0.4, dictionary.getHitRate(), 0.0);
+  }
+
+  @Test
+  public void testDictionaryHitsAreRecordedOnce() {
+    SearchConsoleDictionary dictionary = new SearchConsoleDictionary(10);
+    SearchConsoleFetchMetrics metrics = new SearchConsoleFetchMetrics();
+    page(dictionary, "usa", "fra", "usa");
+    dictionary.record(metrics);
+    page(dictionary, "usa");
+    dictionary.record(metrics);
+
+    // values repeated within a page are looked up once
+    Assert.assertEquals(1, metrics.get(SearchConsoleFetchMetrics.DICTIONARY_HITS));
+    Assert.assertEquals(2, metrics.get(SearchConsoleFetchMetrics.DICTIONARY_MISSES));
+  }
+
+  private static SearchConsolePage page(SearchConsoleDictionary dictionary, String... countries) {
+    SearchConsolePage.Builder builder =
+      SearchConsolePage.builder(SITE, SearchConsoleConstants.SITE_TYPE_URL_PREFIX, 1, dictionary);
+    for (String country : countries) {
+      // copies the value, as values parsed from different responses are different instances
+      builder.setKey(0, new String(country)).endRow();
+    }
+    return builder.build();
+  }
+}
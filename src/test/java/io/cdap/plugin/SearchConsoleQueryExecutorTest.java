@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.webmasters.Webmasters.Searchanalytics.Query;
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SearchConsoleQueryExecutorTest {
+
+  @Test
+  public void testRateLimitedQueryIsSentAgain() throws Exception {
+    SearchConsoleRateLimiter limiter = new SearchConsoleRateLimiter(1000);
+    SearchConsoleQueryExecutor executor = new SearchConsoleQueryExecutor(limiter, 1000, retryPolicy(5, 50));
+    SearchAnalyticsQueryResponse response = new SearchAnalyticsQueryResponse();
+    Query query = Mockito.mock(Query.class);
+    Mockito.when(query.execute()).thenThrow(error(429)).thenReturn(response);
+
+    Assert.assertSame(response, executor.execute("https://rate-limited.example.com/", query));
+    Mockito.verify(query, Mockito.times(2)).execute();
+    Assert.assertTrue(limiter.getRate() < 1000);
+  }
+
+  @Test
+  public void testServerErrorsAndTimeoutsAreRetried() throws Exception {
+    SearchConsoleRetryPolicy retryPolicy = retryPolicy(5, 50);
+    SearchConsoleQueryExecutor executor = new SearchConsoleQueryExecutor(new SearchConsoleRateLimiter(1000), 1000,
+                                                                         retryPolicy);
+    SearchAnalyticsQueryResponse response = new SearchAnalyticsQueryResponse();
+    Query query = Mockito.mock(Query.class);
+    Mockito.when(query.execute()).thenThrow(error(503), new SocketTimeoutException()).thenReturn(response);
+
+    Assert.assertSame(response, executor.execute("https://unavailable.example.com/", query));
+    Assert.assertEquals(2, retryPolicy.getRetries());
+  }
+
+  @Test
+  public void testRequestsAndFailuresAreRecorded() throws Exception {
+    SearchConsoleFetchMetrics metrics = new SearchConsoleFetchMetrics();
+    SearchConsoleQueryExecutor executor = new SearchConsoleQueryExecutor(new SearchConsoleRateLimiter(1000), 1000,
+                                                                         retryPolicy(5, 50), metrics);
+    Query query = Mockito.mock(Query.class);
+    Mockito.when(query.execute()).thenThrow(error(429), error(503), new SocketTimeoutException())
+      .thenReturn(new SearchAnalyticsQueryResponse());
+
+    executor.execute("https://metrics.example.com/", query);
+
+    Assert.assertEquals(4, metrics.get(SearchConsoleFetchMetrics.REQUESTS));
+    Assert.assertEquals(3, metrics.get(SearchConsoleFetchMetrics.RETRIES));
+    Assert.assertEquals(1, metrics.get(SearchConsoleFetchMetrics.RATE_LIMITED));
+    Assert.assertEquals(1, metrics.get(SearchConsoleFetchMetrics.SERVER_ERRORS));
+    Assert.assertEquals(1, metrics.get(SearchConsoleFetchMetrics.TIMEOUTS));
+    Assert.assertEquals(4, metrics.get(SearchConsoleFetchMetrics.LATENCY_BUCKETS[0]));
+
+    Map<String, Integer> drained = new HashMap<>();
+    metrics.drain((name, value) -> drained.merge(name, value, Integer::sum));
+    Assert.assertEquals(Integer.valueOf(4), drained.get(SearchConsoleFetchMetrics.REQUESTS));
+    Assert.assertEquals(0, metrics.get(SearchConsoleFetchMetrics.REQUESTS));
+  }
+
+  @Test
+  public void testMetricsOfStagesAreNotMixed() throws Exception {
+    SearchConsoleFetchMetrics first = SearchConsoleFetchMetrics.of(
+      SearchConsoleFetchMetrics.getScope("default", "pipeline", "first", 1L));
+    SearchConsoleFetchMetrics second = SearchConsoleFetchMetrics.of(
+      SearchConsoleFetchMetrics.getScope("default", "pipeline", "second", 1L));
+    Assert.assertNotSame(first, second);
+    Assert.assertSame(first, SearchConsoleFetchMetrics.of(
+      SearchConsoleFetchMetrics.getScope("default", "pipeline", "first", 1L)));
+
+    SearchConsoleQueryExecutor executor = new SearchConsoleQueryExecutor(new SearchConsoleRateLimiter(1000), 1000,
+                                                                         retryPolicy(5, 50), first);
+    Query query = Mockito.mock(Query.class);
+    Mockito.when(query.execute()).thenAnswer(invocation -> {
+      Assert.assertSame(first, SearchConsoleFetchMetrics.current());
+      return new SearchAnalyticsQueryResponse();
+    });
+    executor.execute("https://first.example.com/", query);
+
+    Assert.assertNull(SearchConsoleFetchMetrics.current());
+    Map<String, Integer> drained = new HashMap<>();
+    second.drain((name, value) -> drained.merge(name, value, Integer::sum));
+    Assert.assertFalse(drained.containsKey(SearchConsoleFetchMetrics.REQUESTS));
+    first.drain((name, value) -> drained.merge(name, value, Integer::sum));
+    Assert.assertEquals(Integer.valueOf(1), drained.get(SearchConsoleFetchMetrics.REQUESTS));
+  }
+
+  @Test
+  public void testRetriesAreBoundedBySplitBudget() throws Exception {
+    SearchConsoleQueryExecutor executor = new SearchConsoleQueryExecutor(new SearchConsoleRateLimiter(1000), 1000,
+                                                                         retryPolicy(5, 3));
+    Query query = Mockito.mock(Query.class);
+    Mockito.when(query.execute()).thenThrow(error(500));
+
+    try {
+      executor.execute("https://broken.example.com/", query);
+      Assert.fail("Expected query to fail");
+    } catch (SearchConsoleRetriesExhaustedException e) {
+      Assert.assertEquals(500, ((GoogleJsonResponseException) e.getCause()).getStatusCode());
+    }
+    Mockito.verify(query, Mockito.times(4)).execute();
+  }
+
+  @Test
+  public void testRetriesRefusedByRunBudgetAreNotTakenFromSplitBudget() throws Exception {
+    AtomicInteger runBudget = new AtomicInteger(0);
+    SearchConsoleRetryPolicy retryPolicy = new SearchConsoleRetryPolicy(10, 2, runBudget, 1, 1);
+
+    Assert.assertFalse(retryPolicy.awaitRetry(1));
+    Assert.assertFalse(retryPolicy.awaitRetry(1));
+    runBudget.set(5);
+
+    Assert.assertTrue(retryPolicy.awaitRetry(1));
+    Assert.assertTrue(retryPolicy.awaitRetry(2));
+    Assert.assertFalse(retryPolicy.awaitRetry(3));
+    Assert.assertEquals(2, retryPolicy.getRetries());
+    Assert.assertEquals(3, runBudget.get());
+  }
+
+  @Test
+  public void testOtherErrorsAreNotSentAgain() throws Exception {
+    SearchConsoleQueryExecutor executor = new SearchConsoleQueryExecutor(new SearchConsoleRateLimiter(1000), 1000,
+                                                                         retryPolicy(5, 50));
+    Query query = Mockito.mock(Query.class);
+    Mockito.when(query.execute()).thenThrow(error(400));
+
+    try {
+      executor.execute("https://bad-request.example.com/", query);
+      Assert.fail("Expected query to fail");
+    } catch (GoogleJsonResponseException e) {
+      Assert.assertEquals(400, e.getStatusCode());
+    }
+    Mockito.verify(query, Mockito.times(1)).execute();
+  }
+
+  @Test
+  public void testRateIsDecreasedMultiplicativelyAndIncreasedAdditively() {
+    SearchConsoleRateLimiter limiter = new SearchConsoleRateLimiter(20);
+
+    limiter.onRateLimited();
+    Assert.assertEquals(10, limiter.getRate(), 0.001);
+    // decreases caused by queries which were in flight together are ignored
+    limiter.onRateLimited();
+    Assert.assertEquals(10, limiter.getRate(), 0.001);
+
+    limiter.onSuccess();
+    Assert.assertEquals(10.1, limiter.getRate(), 0.001);
+    for (int i = 0; i < 1000; i++) {
+      limiter.onSuccess();
+    }
+    Assert.assertEquals(20, limiter.getRate(), 0.001);
+  }
+
+  @Test
+  public void testLimitersAreSharedPerMaximumRate() {
+    SearchConsoleRateLimiter limiter = SearchConsoleRateLimiter.forSite("https://shared.example.com/", 5);
+
+    Assert.assertSame(limiter, SearchConsoleRateLimiter.forSite("https://shared.example.com/", 5));
+    Assert.assertNotSame(limiter, SearchConsoleRateLimiter.forSite("https://shared.example.com/", 10));
+    // a pipeline with another rate does not raise the limit of the first one
+    Assert.assertEquals(5, limiter.getRate(), 0.0);
+  }
+
+  @Test
+  public void testBackoffGrowsExponentiallyWithJitter() {
+    SearchConsoleRetryPolicy retryPolicy = new SearchConsoleRetryPolicy(10, 10, new AtomicInteger(10), 1000, 8000);
+    for (int i = 0; i < 100; i++) {
+      long first = retryPolicy.getBackoffMillis(1);
+      Assert.assertTrue(first >= 500 && first <= 1000);
+      long third = retryPolicy.getBackoffMillis(3);
+      Assert.assertTrue(third >= 2000 && third <= 4000);
+      long capped = retryPolicy.getBackoffMillis(10);
+      Assert.assertTrue(capped >= 4000 && capped <= 8000);
+    }
+  }
+
+  private static SearchConsoleRetryPolicy retryPolicy(int maxRetries, int splitBudget) {
+    return new SearchConsoleRetryPolicy(maxRetries, splitBudget, new AtomicInteger(Integer.MAX_VALUE), 1, 1);
+  }
+
+  private static GoogleJsonResponseException error(int statusCode) {
+    return new GoogleJsonResponseException(new HttpResponseException.Builder(statusCode, null, new HttpHeaders()),
+                                           null);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import com.google.api.services.webmasters.model.SearchAnalyticsQueryRequest;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class SearchConsoleResponseCacheTest {
+
+  private static final String SITE = "https://example.org/";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testPagesAreCachedByRequest() throws Exception {
+    SearchConsoleResponseCache cache = newCache(Long.MAX_VALUE);
+    SearchConsolePage.Builder builder = newPage();
+    builder.setKey(0, "usa").setKey(1, "MOBILE").setClicks(3).setImpressions(10).endRow();
+    builder.setKey(0, "fra").setPosition(1.5).endRow();
+    cache.put(SITE, request(0), builder.build());
+
+    Assert.assertNull(cache.get(SITE, request(25000), newPage()));
+    Assert.assertNull(cache.get("https://example.com/", request(0), newPage()));
+    SearchConsolePage cached = cache.get(SITE, request(0), newPage());
+
+    Assert.assertEquals(2, cached.getSize());
+    Assert.assertEquals("MOBILE", cached.getKey(0, 1));
+    Assert.assertEquals(3, cached.getClicks(0), 0.0);
+    Assert.assertTrue(Double.isNaN(cached.getCtr(0)));
+    Assert.assertNull(cached.getKey(1, 1));
+    Assert.assertEquals(1.5, cached.getPosition(1), 0.0);
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void testCorruptPageIsRemoved() throws Exception {
+    SearchConsoleResponseCache cache = newCache(Long.MAX_VALUE);
+    cache.put(SITE, request(0), newPage().build());
+    File[] files = cachedFiles();
+    Assert.assertEquals(1, files.length);
+    Files.write(files[0].toPath(), "not gzip".getBytes(StandardCharsets.UTF_8));
+
+    Assert.assertNull(cache.get(SITE, request(0), newPage()));
+    Assert.assertEquals(0, cachedFiles().length);
+
+    // the page fetched again replaces it
+    cache.put(SITE, request(0), newPage().build());
+    Assert.assertNotNull(cache.get(SITE, request(0), newPage()));
+  }
+
+  @Test
+  public void testOnlyFinalDataIsCacheable() {
+    SearchConsoleResponseCache cache = newCache(Long.MAX_VALUE);
+
+    Assert.assertTrue(cache.isCacheable(request(0)));
+    Assert.assertFalse(cache.isCacheable(request(0).setEndDate("2020-02-01")));
+  }
+
+  @Test
+  public void testOldestPagesAreEvicted() throws Exception {
+    SearchConsoleResponseCache cache = newCache(Long.MAX_VALUE);
+    cache.put(SITE, request(0), newPage().build());
+    File[] files = cachedFiles();
+    Assert.assertEquals(1, files.length);
+    Assert.assertTrue(files[0].setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+    cache.put(SITE, request(25000), newPage().build());
+
+    newCache(files[0].length()).evict();
+
+    Assert.assertEquals(1, cachedFiles().length);
+    Assert.assertNull(cache.get(SITE, request(0), newPage()));
+    Assert.assertNotNull(cache.get(SITE, request(25000), newPage()));
+  }
+
+  @Test
+  public void testDirectoryIsEvictedOncePerInterval() throws Exception {
+    Assert.assertTrue(newCache(Long.MAX_VALUE).evictIfDue());
+    Assert.assertFalse(newCache(Long.MAX_VALUE).evictIfDue());
+  }
+
+  private File[] cachedFiles() {
+    return temporaryFolder.getRoot().listFiles((dir, name) -> name.endsWith(".json.gz"));
+  }
+
+  private SearchConsoleResponseCache newCache(long maxBytes) {
+    return new SearchConsoleResponseCache(temporaryFolder.getRoot().getPath(), new Configuration(false), maxBytes,
+                                          TimeUnit.DAYS.toMillis(1), LocalDate.parse("2020-01-31"));
+  }
+
+  private static SearchConsolePage.Builder newPage() {
+    return SearchConsolePage.builder(SITE, SearchConsoleConstants.SITE_TYPE_URL_PREFIX, 2);
+  }
+
+  private static SearchAnalyticsQueryRequest request(int startRow) {
+    return new SearchAnalyticsQueryRequest().setStartDate("2020-01-01").setEndDate("2020-01-31")
+      .setDimensions(Arrays.asList("country", "device")).setStartRow(startRow);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+public class SearchConsoleResponseDecoderTest {
+
+  private static final String SITE = "https://example.org/";
+
+  @Test
+  public void testRowsAreDecoded() throws Exception {
+    String body = "{\"rows\":[{\"keys\":[\"usa\",\"MOBILE\"],\"clicks\":3,\"impressions\":10,\"ctr\":0.3,"
+      + "\"position\":1.5,\"unknown\":{\"nested\":[1,2]}},{\"keys\":[\"fra\",\"DESKTOP\"],\"clicks\":0}],"
+      + "\"responseAggregationType\":\"byProperty\"}";
+
+    SearchConsolePage page = decode(body);
+
+    Assert.assertEquals(2, page.getSize());
+    Assert.assertEquals(SITE, page.getSite());
+    Assert.assertEquals(SearchConsoleConstants.SITE_TYPE_URL_PREFIX, page.getSiteType());
+    Assert.assertEquals(2, page.getDimensionCount());
+    Assert.assertEquals("MOBILE", page.getKey(0, 1));
+    Assert.assertEquals("fra", page.getKey(1, 0));
+    Assert.assertEquals(3, page.getClicks(0), 0.0);
+    Assert.assertEquals(10, page.getImpressions(0), 0.0);
+    Assert.assertEquals(0.3, page.getCtr(0), 0.0);
+    Assert.assertEquals(1.5, page.getPosition(0), 0.0);
+    Assert.assertTrue(Double.isNaN(page.getPosition(1)));
+  }
+
+  @Test
+  public void testResponseWithoutRows() throws Exception {
+    Assert.assertTrue(decode("{\"responseAggregationType\":\"byProperty\"}").isEmpty());
+  }
+
+  private static SearchConsolePage decode(String body) throws Exception {
+    return SearchConsoleResponseDecoder.decode(
+      new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+      SearchConsolePage.builder(SITE, SearchConsoleConstants.SITE_TYPE_URL_PREFIX, 2));
+  }
+}
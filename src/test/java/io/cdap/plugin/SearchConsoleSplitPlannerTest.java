@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SearchConsoleSplitPlannerTest {
+
+  private static final DateRange RANGE = DateRange.parse("2020-01-01", "2020-01-04");
+
+  @Test
+  public void testPlanByCostBalancesSplits() {
+    List<SearchConsoleSplitPlanner.WorkUnit> units = new ArrayList<>();
+    // one large site over four daily windows and three small sites
+    for (DateRange window : RANGE.split(1)) {
+      units.add(new SearchConsoleSplitPlanner.WorkUnit("sc-domain:large.com", window, 100));
+    }
+    units.add(new SearchConsoleSplitPlanner.WorkUnit("small1.com", RANGE, 10));
+    units.add(new SearchConsoleSplitPlanner.WorkUnit("small2.com", RANGE, 10));
+    units.add(new SearchConsoleSplitPlanner.WorkUnit("small3.com", RANGE, 10));
+
+    List<List<SearchConsoleQuery>> splits = new SearchConsoleSplitPlanner(4).planByCost(units);
+
+    Assert.assertEquals(4, splits.size());
+    int largeSiteQueries = 0;
+    for (List<SearchConsoleQuery> queries : splits) {
+      for (SearchConsoleQuery query : queries) {
+        if (query.getSites().contains("sc-domain:large.com")) {
+          largeSiteQueries++;
+          Assert.assertEquals(1, query.getDateRange().getDays());
+        }
+      }
+      // every split gets one window of the large site, small sites go to the lightest splits
+      Assert.assertTrue(queries.size() <= 2);
+    }
+    Assert.assertEquals(4, largeSiteQueries);
+  }
+
+  @Test
+  public void testPlanByCostMergesSitesOfSameWindow() {
+    List<SearchConsoleSplitPlanner.WorkUnit> units = new ArrayList<>();
+    units.add(new SearchConsoleSplitPlanner.WorkUnit("a.com", RANGE, 5));
+    units.add(new SearchConsoleSplitPlanner.WorkUnit("b.com", RANGE, 5));
+    units.add(new SearchConsoleSplitPlanner.WorkUnit("c.com", RANGE, 5));
+
+    List<List<SearchConsoleQuery>> splits = new SearchConsoleSplitPlanner(1).planByCost(units);
+
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(1, splits.get(0).size());
+    Assert.assertEquals(3, splits.get(0).get(0).getSites().size());
+    Assert.assertEquals(15, new SearchConsoleSplit(splits.get(0)).getLength());
+  }
+
+  @Test
+  public void testRowRangesAreCountedByProbing() {
+    AtomicInteger probes = new AtomicInteger();
+    SearchConsoleSplitPlanner.RowProbe probe = (site, window, startRow) -> {
+      probes.incrementAndGet();
+      return startRow < 1_030_000;
+    };
+
+    Assert.assertEquals(21, SearchConsoleSplitPlanner.countRowRanges("a.com", RANGE, 50000, probe));
+    Assert.assertTrue(probes.get() <= 12);
+    Assert.assertEquals(1, SearchConsoleSplitPlanner.countRowRanges("a.com", RANGE, 50000,
+                                                                    (site, window, startRow) -> false));
+    Assert.assertEquals(1, SearchConsoleSplitPlanner.countRowRanges("a.com", RANGE, 50000, (site, window, startRow) -> {
+      throw new IOException("quota");
+    }));
+    // start rows of ranges stay within int
+    Assert.assertEquals(Integer.MAX_VALUE / 25000 + 1, SearchConsoleSplitPlanner.countRowRanges(
+      "a.com", RANGE, 25000, (site, window, startRow) -> true));
+    Assert.assertEquals(50000, SearchConsoleSplitPlanner.getRowsPerRange(40000));
+  }
+
+  @Test
+  public void testLargeUnitsAreSplitIntoRowRanges() {
+    List<SearchConsoleSplitPlanner.WorkUnit> units = new ArrayList<>();
+    units.add(new SearchConsoleSplitPlanner.WorkUnit("large.com", RANGE, 1_000_000));
+    units.add(new SearchConsoleSplitPlanner.WorkUnit("small.com", RANGE, 10));
+    List<String> probed = new ArrayList<>();
+
+    List<SearchConsoleSplitPlanner.WorkUnit> ranged = SearchConsoleSplitPlanner.splitRowRanges(
+      units, 50000, (site, window, startRow) -> probed.add(site) && startRow < 120000);
+    List<List<SearchConsoleQuery>> splits = new SearchConsoleSplitPlanner(4).planByCost(ranged);
+
+    Assert.assertFalse(probed.contains("small.com"));
+    Assert.assertEquals(4, ranged.size());
+    Assert.assertEquals(4, splits.size());
+    List<String> rowRanges = new ArrayList<>();
+    for (List<SearchConsoleQuery> queries : splits) {
+      Assert.assertEquals(1, queries.size());
+      SearchConsoleQuery query = queries.get(0);
+      if (query.getSites().contains("large.com")) {
+        rowRanges.add(query.getStartRow() + "-" + query.getEndRow());
+      }
+    }
+    rowRanges.sort(null);
+    // the last range is read until the last row
+    Assert.assertEquals(Arrays.asList("0-50000", "100000-null", "50000-100000"), rowRanges);
+  }
+
+  @Test
+  public void testHeavySitesGetSplitsOfTheirOwn() {
+    List<List<SearchConsoleQuery>> planned = new SearchConsoleSplitPlanner(1)
+      .planBySiteCount(Arrays.asList("a.com", "b.com", "c.com"), Collections.singletonList(RANGE));
+
+    List<List<SearchConsoleQuery>> splits = SearchConsoleSplitPlanner.splitQueryRowRanges(
+      planned, 25000, (site, window, startRow) -> "b.com".equals(site) && startRow < 50000);
+
+    Assert.assertEquals(3, splits.size());
+    Assert.assertEquals(Arrays.asList("a.com", "c.com"), splits.get(0).get(0).getSites());
+    Assert.assertEquals(Collections.singletonList("b.com"), splits.get(1).get(0).getSites());
+    Assert.assertEquals(0, splits.get(1).get(0).getStartRow());
+    Assert.assertEquals(Integer.valueOf(25000), splits.get(1).get(0).getEndRow());
+    Assert.assertEquals(25000, splits.get(2).get(0).getStartRow());
+    Assert.assertNull(splits.get(2).get(0).getEndRow());
+  }
+
+  @Test
+  public void testSplitLengthWithoutEstimateIsSiteDays() {
+    List<List<SearchConsoleQuery>> splits = new SearchConsoleSplitPlanner(1)
+      .planBySiteCount(Arrays.asList("a.com", "b.com"), RANGE.split(2));
+
+    // a split per window with both sites over two days
+    Assert.assertEquals(2, splits.size());
+    Assert.assertEquals(4, new SearchConsoleSplit(splits.get(0)).getLength());
+    Assert.assertEquals(4, new SearchConsoleSplit(splits.get(1)).getLength());
+  }
+
+  @Test
+  public void testMissingRangesStartAfterWatermarks() {
+    Map<String, LocalDate> watermarks = new HashMap<>();
+    watermarks.put("a.com", LocalDate.parse("2020-01-02"));
+    watermarks.put("b.com", LocalDate.parse("2020-01-02"));
+    watermarks.put("c.com", LocalDate.parse("2020-01-04"));
+    // watermark before the configured range is ignored
+    watermarks.put("d.com", LocalDate.parse("2019-12-01"));
+
+    Map<DateRange, List<String>> missing = SearchConsoleSplitPlanner.getMissingRanges(
+      Arrays.asList("a.com", "b.com", "c.com", "d.com", "e.com"), watermarks, RANGE, LocalDate.parse("2020-01-04"));
+
+    Assert.assertEquals(2, missing.size());
+    Assert.assertEquals(Arrays.asList("d.com", "e.com"), missing.get(RANGE));
+    Assert.assertEquals(Arrays.asList("a.com", "b.com"), missing.get(DateRange.parse("2020-01-03", "2020-01-04")));
+    Assert.assertEquals(RANGE, missing.keySet().iterator().next());
+  }
+}
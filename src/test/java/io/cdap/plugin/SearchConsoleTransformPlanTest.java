@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class SearchConsoleTransformPlanTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "etlSchemaBody",
+    Schema.Field.of("device", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("country", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("site", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("clicks", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("impressions", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("position", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))));
+
+  @Test
+  public void testFieldsAreBoundToDimensionsAndMetrics() throws Exception {
+    SearchConsoleTransformPlan plan = SearchConsoleTransformPlan.of(SCHEMA, Arrays.asList("country", "device"));
+    SearchConsolePage.Builder page =
+      SearchConsolePage.builder("sc-domain:example.com", SearchConsoleConstants.SITE_TYPE_DOMAIN, 2);
+    page.setKey(0, "usa").setKey(1, "MOBILE").setClicks(3.0).setImpressions(10.0).setCtr(0.3).endRow();
+    SearchConsoleRow row = new SearchConsoleRow(page.build(), 0);
+
+    StructuredRecord record = plan.transform(row);
+
+    Assert.assertEquals("usa", record.get("country"));
+    Assert.assertEquals("MOBILE", record.get("device"));
+    Assert.assertEquals("sc-domain:example.com", record.get("site"));
+    Assert.assertEquals(3.0, record.<Double>get("clicks"), 0.0);
+    Assert.assertEquals("10.0", record.get("impressions"));
+    Assert.assertNull(record.get("position"));
+  }
+
+  @Test
+  public void testDimensionValuesAreConvertedOncePerPage() throws Exception {
+    SearchConsoleTransformPlan plan = SearchConsoleTransformPlan.of(SCHEMA, Arrays.asList("country", "device"));
+    SearchConsolePage.Builder builder =
+      SearchConsolePage.builder("sc-domain:example.com", SearchConsoleConstants.SITE_TYPE_DOMAIN, 2);
+    for (int i = 0; i < 10; i++) {
+      builder.setKey(0, i % 2 == 0 ? "usa" : "fra").setKey(1, "MOBILE").setClicks(i).setImpressions(1.0).endRow();
+    }
+    SearchConsolePage page = builder.build();
+
+    SearchConsoleRowIterator rows = new SearchConsoleRowIterator(Arrays.asList(page, page).iterator());
+    int index = 0;
+    while (rows.hasNext()) {
+      StructuredRecord record = plan.transform(rows.next());
+      Assert.assertEquals(index++ % 2 == 0 ? "usa" : "fra", record.get("country"));
+      Assert.assertEquals("MOBILE", record.get("device"));
+    }
+
+    // both pages are the same instance, so its three distinct values are converted once
+    Assert.assertEquals(3, plan.getConversionCacheMisses());
+    Assert.assertEquals(37, plan.getConversionCacheHits());
+  }
+}
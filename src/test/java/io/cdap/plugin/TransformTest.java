@@ -82,24 +82,24 @@ public class TransformTest extends HydratorTestBase {
   @PrepareForTest(SearchConsoleSource.class)
   public void testSearchConsoleSource() throws Exception {
     BatchRuntimeContext mock = Mockito.mock(BatchRuntimeContext.class);
-    List<ApiDataRow> apiDataRows = generateRows();
+    List<SearchConsoleRow> apiDataRows = generateRows();
 
     SearchConsoleSourceConfig consoleSourceConfig = SearchConsoleSourceConfigHelper
         .newConfigBuilder().
             build();
     SearchConsoleRecordReader searchConsoleRecordReader = PowerMockito
         .mock(SearchConsoleRecordReader.class);
-    when(searchConsoleRecordReader.getQueryData()).thenReturn(apiDataRows);
+    when(searchConsoleRecordReader.getQueryData()).thenReturn(apiDataRows.iterator());
     PowerMockito.whenNew(SearchConsoleRecordReader.class).withAnyArguments()
         .thenReturn(searchConsoleRecordReader);
 
-    ApiDataRow apiDataRow = apiDataRows.get(0);
+    SearchConsoleRow apiDataRow = apiDataRows.get(0);
     SearchConsoleSource searchConsoleSource = new SearchConsoleSource(consoleSourceConfig);
     searchConsoleSource.initialize(mock);
     Emitter<StructuredRecord> emitter = new Emitter<StructuredRecord>() {
       @Override
       public void emit(StructuredRecord record) {
-        Assert.assertEquals(apiDataRow.getClicks(), record.get("clicks"));
+        Assert.assertEquals(apiDataRow.getClicks(), record.<Double>get("clicks"), 0.0);
       }
 
       @Override
@@ -113,19 +113,20 @@ public class TransformTest extends HydratorTestBase {
       }
     };
 
-    KeyValue<String, ApiDataRow> temp = new KeyValue<>("temp", apiDataRow);
+    KeyValue<String, SearchConsoleRow> temp = new KeyValue<>("temp", apiDataRow);
     searchConsoleSource.transform(temp, emitter);
   }
 
-  private List<ApiDataRow> generateRows() {
-    List<ApiDataRow> list = new ArrayList<>();
+  private List<SearchConsoleRow> generateRows() {
+    List<SearchConsoleRow> list = new ArrayList<>();
     ApiDataRow dataRow = new ApiDataRow();
     dataRow.setClicks(Math.random());
     dataRow.setImpressions(Math.random());
     dataRow.setCtr(Math.random());
     dataRow.setPosition(Math.random());
     dataRow.setKeys(Arrays.asList(SearchConsoleSourceConfigHelper.TEST_DIMENSIONS.split(",")));
-    list.add(dataRow);
+    list.add(SearchConsoleRow.of(dataRow, SearchConsoleConstants.SEARCH_CONSOLE_DOMAIN_PREFIX + "example",
+                                 SearchConsoleConstants.SITE_TYPE_DOMAIN));
     return list;
   }
 